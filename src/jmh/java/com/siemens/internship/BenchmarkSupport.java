@@ -0,0 +1,102 @@
+package com.siemens.internship;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Starts the application against an in-memory (or file) H2 database and fills it with test data.
+ * The web layer is only started by startWebContext.
+ */
+final class BenchmarkSupport {
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final String INSERT_ITEM =
+            "INSERT INTO item (id, name, description, status, email, version) VALUES (?, ?, ?, ?, ?, 0)";
+
+    private BenchmarkSupport() {
+    }
+
+    //Extra properties are given as "key=value" and override application.properties
+    static ConfigurableApplicationContext startContext(String... properties) {
+        return start(Stream.concat(Stream.of("spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"), Stream.of(properties)));
+    }
+
+    //Same as startContext, but with the web layer on a random port (local.server.port)
+    static ConfigurableApplicationContext startWebContext(String... properties) {
+        return start(WebApplicationType.SERVLET,
+                Stream.concat(Stream.of("spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1", "server.port=0"), Stream.of(properties)));
+    }
+
+    //Same as startContext, but with the file profile and its database in the given directory
+    static ConfigurableApplicationContext startFileContext(Path directory, String... properties) {
+        return start(Stream.concat(Stream.of("spring.profiles.active=file", "item.db.path=" + directory.resolve("items")), Stream.of(properties)));
+    }
+
+    //Deletes a file database left over by an earlier run
+    static void deleteDatabase(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Stream<String> properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    //The defaults are only used for the keys the benchmark doesn't set itself
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, Stream<String> properties) {
+        List<String> given = properties.toList();
+        Stream<String> defaults = Stream.of(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "item.processing.delay-ms=0")
+                .filter(property -> given.stream().noneMatch(other -> key(other).equals(key(property))));
+        String[] args = Stream.concat(defaults, given.stream())
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(InternshipApplication.class)
+                .web(webApplicationType)
+                .run(args);
+    }
+
+    private static String key(String property) {
+        return property.substring(0, property.indexOf('='));
+    }
+
+    //Inserts the rows straight through JDBC, going through JPA would take longer than the benchmark itself
+    static void populate(ConfigurableApplicationContext context, int rows) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.update("DELETE FROM item");
+
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (long id = 1; id <= rows; id++) {
+            batch.add(new Object[]{id, "Item" + id, "Description" + id, id % 2 == 0 ? "PROCESSED" : "NEW", "item" + id + "@example.com"});
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                jdbc.batchUpdate(INSERT_ITEM, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(INSERT_ITEM, batch);
+        }
+
+        //Move the sequence past the inserted ids, so ids generated by JPA don't collide with them
+        jdbc.execute("ALTER SEQUENCE item_seq RESTART WITH " + (rows + 1_000));
+    }
+}
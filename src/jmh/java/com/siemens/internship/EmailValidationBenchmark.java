@@ -0,0 +1,65 @@
+package com.siemens.internship;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The @ValidEmail scanner against the @Pattern regex it replaced, on their own and through Hibernate Validator.
+ * The long inputs make the regex backtrack over every '.' of the domain, the scanner stays one pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailValidationBenchmark {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$");
+
+    @Param({"valid", "invalid", "longLocal", "longDomain"})
+    public String input;
+
+    private String email;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        email = switch (input) {
+            case "valid" -> "john.doe+tag@mail.example.com";
+            case "invalid" -> "john.doe@example";
+            case "longLocal" -> "a".repeat(10_000) + "@example.c0m";
+            case "longDomain" -> "a@" + "a.".repeat(5_000) + "c1";
+            default -> throw new IllegalArgumentException("Unknown input " + input);
+        };
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public boolean pattern() {
+        return EMAIL_PATTERN.matcher(email).matches();
+    }
+
+    @Benchmark
+    public boolean scanner() {
+        return ValidEmailValidator.isValidEmail(email);
+    }
+
+    //The whole path of a create: @NotBlank + @ValidEmail through Hibernate Validator, including the message on failure
+    @Benchmark
+    public int validateItemEmail() {
+        return validator.validateValue(Item.class, "email", email).size();
+    }
+}
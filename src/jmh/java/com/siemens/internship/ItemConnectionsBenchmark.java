@@ -0,0 +1,90 @@
+package com.siemens.internship;
+
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent connections held by the server, with the default settings and with the server profile.
+ * <p>
+ * Every connection is parked on GET /api/items/process: the requests all join the same run, which is slowed down to
+ * outlast the trial, and wait for it asynchronously. The benchmark measures GET /api/items/{id} next to them, and
+ * the setup prints how many of the parked requests the server actually took (http.server.requests.active), the rest
+ * wait in the accept backlog or were refused.
+ * Tomcat by default, build with -Pbenchmark,undertow for Undertow. Needs ulimit -n above the connection count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ItemConnectionsBenchmark {
+
+    @Param({"default", "server"})
+    public String profile;
+
+    @Param({"1000", "5000", "10000"})
+    public int connections;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient parkingClient;
+    private HttpClient client;
+    private final List<CompletableFuture<HttpResponse<Void>>> parked = new ArrayList<>();
+    private URI itemUri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = BenchmarkSupport.startWebContext(
+                "spring.profiles.active=" + profile,
+                "item.rate-limit.enabled=false",
+                //One item that takes longer than the trial, so the run never ends while we measure
+                "item.processing.delay-ms=120000");
+        BenchmarkSupport.populate(context, 1);
+        String baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        itemUri = URI.create(baseUri + "/api/items/1");
+
+        //HTTP/1.1: one connection per parked request, h2c would put them all on one connection
+        parkingClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest process = HttpRequest.newBuilder(URI.create(baseUri + "/api/items/process")).GET().build();
+        for (int i = 0; i < connections; i++) {
+            parked.add(parkingClient.sendAsync(process, HttpResponse.BodyHandlers.discarding()));
+        }
+
+        //Give the server time to accept what it can
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        long held = 0;
+        for (int attempt = 0; attempt < 20 && held < connections; attempt++) {
+            Thread.sleep(500);
+            held = meterRegistry.find("http.server.requests.active").longTaskTimers().stream()
+                    .mapToLong(LongTaskTimer::activeTasks)
+                    .sum();
+        }
+        long failed = parked.stream().filter(CompletableFuture::isCompletedExceptionally).count();
+        System.out.printf("%n# %s: server holds %d of %d connections, %d refused%n", profile, held, connections, failed);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parked.forEach(request -> request.cancel(true));
+        parked.clear();
+        context.close();
+    }
+
+    @Benchmark
+    public int getItemNextToParkedConnections() throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(itemUri).GET().build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,75 @@
+package com.siemens.internship;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups by email and status with and without the idx_item_email / idx_item_status indexes.
+ * Without them every lookup is a full scan, so its latency grows with the rows, with them it should stay flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    @Param({"50"})
+    public int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private ItemRepository itemRepository;
+    private String existingEmail;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.startContext();
+        BenchmarkSupport.populate(context, rows);
+        if (!indexed) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            jdbc.execute("DROP INDEX IF EXISTS idx_item_email");
+            jdbc.execute("DROP INDEX IF EXISTS idx_item_status");
+        }
+        itemRepository = context.getBean(ItemRepository.class);
+        //From the end of the table, so a scan has to go through almost all rows
+        existingEmail = "item" + (rows - 1) + "@example.com";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean existsByEmail() {
+        return itemRepository.existsByEmail(existingEmail);
+    }
+
+    @Benchmark
+    public boolean existsByEmailMissing() {
+        return itemRepository.existsByEmail("missing@example.com");
+    }
+
+    @Benchmark
+    public List<Item> findPageByEmail() {
+        return itemRepository.findPageAfter(0L, null, existingEmail, PageRequest.of(0, pageSize));
+    }
+
+    //Half of the rows are NEW, so this mostly shows what a low cardinality index is (not) worth
+    @Benchmark
+    public List<Item> findByStatus() {
+        return itemRepository.findByStatusOrderById("NEW", PageRequest.of(0, pageSize));
+    }
+}
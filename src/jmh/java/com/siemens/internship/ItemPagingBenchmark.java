@@ -0,0 +1,63 @@
+package com.siemens.internship;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyset pagination (ItemRepository.findPageAfter) against Spring Data offset paging at different page depths.
+ * The keyset page should cost the same at any depth, the offset page gets slower the deeper it goes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemPagingBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    //Where the page starts, as a fraction of the table
+    @Param({"0.0", "0.5", "0.99"})
+    public double depth;
+
+    @Param({"50"})
+    public int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private ItemRepository itemRepository;
+    private long afterId;
+    private int pageNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.startContext();
+        BenchmarkSupport.populate(context, rows);
+        itemRepository = context.getBean(ItemRepository.class);
+        afterId = (long) (rows * depth);
+        pageNumber = (int) (afterId / pageSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Item> keyset() {
+        return itemRepository.findPageAfter(afterId, null, null, PageRequest.of(0, pageSize));
+    }
+
+    //Includes the count query, like every Pageable request through Spring Data does
+    @Benchmark
+    public Page<Item> offset() {
+        return itemRepository.findAll(PageRequest.of(pageNumber, pageSize, Sort.by("id")));
+    }
+}
@@ -0,0 +1,68 @@
+package com.siemens.internship;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of ItemService.processItemsAsync, reported as processed items per second ("items" counter).
+ * The VIRTUAL executor mode needs a Java 21 build and runtime: -Pjava21 -Djmh.args="ItemProcessing -p executor=VIRTUAL".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ItemProcessingBenchmark {
+
+    @Param({"PLATFORM"})
+    public String executor;
+
+    //Threads of the PLATFORM pool, and the max concurrency in both modes
+    @Param({"5", "10", "20"})
+    public int poolSize;
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"100"})
+    public long delayMs;
+
+    @Param({"10"})
+    public int chunkSize;
+
+    private ConfigurableApplicationContext context;
+    private ItemService itemService;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class ProcessedItems {
+        public long items;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.startContext(
+                "item.processing.executor=" + executor,
+                "item.processing.pool-size=" + poolSize,
+                "item.processing.max-concurrency=" + poolSize,
+                //A couple of spare connections, so the pool isn't what limits the run
+                "spring.datasource.hikari.maximum-pool-size=" + (poolSize + 2),
+                "item.processing.delay-ms=" + delayMs,
+                "item.processing.chunk-size=" + chunkSize);
+        BenchmarkSupport.populate(context, rows);
+        itemService = context.getBean(ItemService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void processAll(ProcessedItems counter) {
+        counter.items += itemService.processItemsAsync().join().size();
+    }
+}
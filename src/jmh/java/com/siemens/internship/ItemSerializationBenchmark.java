@@ -0,0 +1,83 @@
+package com.siemens.internship;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializing a list of 100k items like the list endpoint does, per format, with and without Blackbird and gzip.
+ * The time is the CPU cost per response, the bytes on the wire are printed at the end of every trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemSerializationBenchmark {
+
+    @Param({"100000"})
+    public int items;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean blackbird;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private ObjectMapper mapper;
+    private List<Item> list;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = switch (format) {
+            case "json" -> new JsonMapper();
+            case "cbor" -> new CBORMapper();
+            case "smile" -> new SmileMapper();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        if (blackbird) {
+            mapper.registerModule(new BlackbirdModule());
+        }
+        list = LongStream.rangeClosed(1, items)
+                .mapToObj(id -> {
+                    Item item = new Item(id, "Item" + id, "Description" + id, id % 2 == 0 ? "PROCESSED" : "NEW", "item" + id + "@example.com");
+                    item.setVersion(0L);
+                    return item;
+                })
+                .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%s blackbird=%s gzip=%s: %d bytes for %d items%n", format, blackbird, gzip, serialize().length, items);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        if (gzip) {
+            //Same as the server compression: the serializer writes straight into the gzip stream
+            try (OutputStream out = new GZIPOutputStream(bytes, 8192)) {
+                mapper.writeValue(out, list);
+            }
+        } else {
+            mapper.writeValue(bytes, list);
+        }
+        return bytes.toByteArray();
+    }
+}
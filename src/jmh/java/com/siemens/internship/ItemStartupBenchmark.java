@@ -0,0 +1,44 @@
+package com.siemens.internship;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to start the application in a fresh JVM (nothing loaded or warmed up yet), in-memory against the file profile.
+ * The file database is created from scratch, so this is the fixed cost of the profile, opening an existing
+ * database is lazy in H2 and doesn't read the tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class ItemStartupBenchmark {
+
+    @Param({"mem", "file"})
+    public String storage;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.deleteDatabase(ItemStorageBenchmark.DATABASE_DIRECTORY);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long start() {
+        context = "file".equals(storage)
+                ? BenchmarkSupport.startFileContext(ItemStorageBenchmark.DATABASE_DIRECTORY)
+                : BenchmarkSupport.startContext();
+        //Touch the table, so the database is really open
+        return context.getBean(ItemRepository.class).count();
+    }
+}
@@ -0,0 +1,78 @@
+package com.siemens.internship;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the durable file profile costs compared to the in-memory database: writes, reads by id and a processing run.
+ * The file database is created from scratch in target/jmh-db for every trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemStorageBenchmark {
+
+    static final Path DATABASE_DIRECTORY = Path.of("target", "jmh-db");
+
+    @Param({"mem", "file"})
+    public String storage;
+
+    @Param({"100000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private ItemService itemService;
+    private ItemRepository itemRepository;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = startContext(storage);
+        BenchmarkSupport.populate(context, rows);
+        itemService = context.getBean(ItemService.class);
+        itemRepository = context.getBean(ItemRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //One insert, one commit
+    @Benchmark
+    public Item save() {
+        return itemService.save(new Item(null, "Item", "Description", "NEW", "item@example.com"));
+    }
+
+    //Straight from the repository, the item cache would hide the storage
+    @Benchmark
+    public Item findById() {
+        nextId = nextId % rows + 1;
+        return itemRepository.findById(nextId).orElseThrow();
+    }
+
+    //Every item is loaded, changed and written back, in chunks
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public List<Item> processAll() {
+        return itemService.processItemsAsync().join();
+    }
+
+    static ConfigurableApplicationContext startContext(String storage) {
+        if ("file".equals(storage)) {
+            BenchmarkSupport.deleteDatabase(DATABASE_DIRECTORY);
+            return BenchmarkSupport.startFileContext(DATABASE_DIRECTORY);
+        }
+        return BenchmarkSupport.startContext();
+    }
+}
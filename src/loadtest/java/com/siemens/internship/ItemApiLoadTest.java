@@ -0,0 +1,90 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the mix of LoadTestSettings against the application on a random port and writes the report to
+ * target/loadtest. Fails on too many errors, or when a p99 regressed against the baseline report.
+ * Only run by the loadtest profile: mvn -Ploadtest test -Dloadtest.rate=1000 -Dloadtest.baseline=baseline.json
+ * <p>
+ * The rate limit is off, it would measure the limiter instead of the API. Items are processed without the
+ * simulated delay, so the process jobs of the mix don't run for the whole test.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "item.rate-limit.enabled=false",
+        "item.processing.delay-ms=0",
+        "logging.level.root=WARN"
+})
+class ItemApiLoadTest {
+
+    private static final String INSERT_ITEM =
+            "INSERT INTO item (id, name, description, status, email, version) VALUES (?, ?, ?, ?, ?, 0)";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+
+    @BeforeEach
+    void populate() {
+        jdbcTemplate.update("DELETE FROM item");
+        List<Object[]> rows = new ArrayList<>(settings.rows());
+        for (long id = 1; id <= settings.rows(); id++) {
+            rows.add(new Object[]{id, "Item" + id, "Description" + id, "NEW", "item" + id + "@example.com"});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ITEM, rows);
+        //Ids generated for the created items must not collide with the seeded ones
+        jdbcTemplate.execute("ALTER SEQUENCE item_seq RESTART WITH " + (settings.rows() + 1_000));
+    }
+
+    @Test
+    void mixedWorkload() throws Exception {
+        //The client must never be the bottleneck, its own thread pool only parses the responses
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(clientExecutor)
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .build();
+            LoadGenerator generator = new LoadGenerator(client, URI.create("http://localhost:" + port), settings.rows(), settings.mix());
+
+            generator.run(settings.rate(), settings.warmup(), settings.maxInFlight());
+            Instant startedAt = Instant.now();
+            Map<LoadOperation, LoadGenerator.Recording> recordings = generator.run(settings.rate(), settings.duration(), settings.maxInFlight());
+
+            LoadTestReport report = LoadTestReport.of(startedAt, settings.rate(), settings.duration(), recordings);
+            report.write(settings.reportDirectory(), "ItemApiLoadTest", recordings);
+            System.out.println(report.summary());
+
+            assertTrue(report.total().errorRate() <= settings.maxErrorRate(),
+                    "Error rate " + report.total().errorRate() + " is above " + settings.maxErrorRate());
+            if (settings.baseline() != null) {
+                assertTrue(Files.exists(settings.baseline()), "Baseline report " + settings.baseline() + " not found");
+                List<String> regressions = report.p99Regressions(LoadTestReport.read(settings.baseline()), settings.maxP99Regression());
+                assertTrue(regressions.isEmpty(), "p99 regressed: " + regressions);
+            }
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+}
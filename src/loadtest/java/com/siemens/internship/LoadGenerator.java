@@ -0,0 +1,132 @@
+package com.siemens.internship;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open model load generator: requests are sent on a fixed schedule (rate per second), not when the previous one is done.
+ * <p>
+ * The response time of a request is measured from the time it was scheduled to be sent, not from when it was
+ * actually sent. When the server stalls, the requests that should have gone out during the stall are late and their
+ * wait counts, instead of the stall showing up as one slow request (coordinated omission). The time from the actual
+ * send is recorded too, as the service time, the gap between the two is the queueing in front of the server.
+ */
+final class LoadGenerator {
+
+    private final HttpClient client;
+    private final URI baseUri;
+    private final long maxId;
+    private final LoadOperation[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadGenerator(HttpClient client, URI baseUri, long maxId, Map<LoadOperation, Integer> mix) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.maxId = maxId;
+        this.operations = mix.keySet().toArray(LoadOperation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    Map<LoadOperation, Recording> run(double rate, Duration duration, int maxInFlight) throws InterruptedException {
+        Map<LoadOperation, Recording> recordings = new EnumMap<>(LoadOperation.class);
+        for (LoadOperation operation : operations) {
+            recordings.put(operation, new Recording());
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        Random requestRandom = new Random(42);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long intended = start; intended < end; intended += interval) {
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            //Too many requests pending: the next ones are late, which their response time includes
+            inFlight.acquire();
+
+            LoadOperation operation = pick(random);
+            Recording recording = recordings.get(operation);
+            long scheduledAt = intended;
+            long sentAt = System.nanoTime();
+            client.sendAsync(operation.request(baseUri, maxId, requestRandom), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long doneAt = System.nanoTime();
+                        inFlight.release();
+                        recording.record(scheduledAt, sentAt, doneAt, error == null ? response.statusCode() : -1);
+                    });
+        }
+        //Wait for the last responses
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        return recordings;
+    }
+
+    private LoadOperation pick(SplittableRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Latencies of one operation in microseconds. 4xx responses (an update that lost a race, a rate limited call)
+     * are answers of the server and are counted apart, transport errors and 5xx are errors.
+     */
+    static final class Recording {
+
+        private final Histogram responseTime = new ConcurrentHistogram(3);
+        private final Histogram serviceTime = new ConcurrentHistogram(3);
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        private void record(long scheduledAt, long sentAt, long doneAt, int status) {
+            responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(doneAt - scheduledAt));
+            serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(doneAt - sentAt));
+            if (status < 0 || status >= 500) {
+                errors.incrementAndGet();
+            } else if (status >= 400) {
+                rejected.incrementAndGet();
+            }
+        }
+
+        Histogram responseTime() {
+            return responseTime;
+        }
+
+        Histogram serviceTime() {
+            return serviceTime;
+        }
+
+        long rejected() {
+            return rejected.get();
+        }
+
+        long errors() {
+            return errors.get();
+        }
+    }
+}
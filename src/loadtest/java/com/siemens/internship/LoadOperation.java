@@ -0,0 +1,65 @@
+package com.siemens.internship;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Random;
+
+/**
+ * The requests of the load test mix. Ids are picked at random among the seeded items.
+ */
+enum LoadOperation {
+
+    GET {
+        @Override
+        HttpRequest request(URI baseUri, long maxId, Random random) {
+            return HttpRequest.newBuilder(baseUri.resolve("/api/items/" + randomId(maxId, random))).GET().build();
+        }
+    },
+    LIST {
+        @Override
+        HttpRequest request(URI baseUri, long maxId, Random random) {
+            return HttpRequest.newBuilder(baseUri.resolve("/api/items?limit=50&fields=id,name,status")).GET().build();
+        }
+    },
+    CREATE {
+        @Override
+        HttpRequest request(URI baseUri, long maxId, Random random) {
+            return json(HttpRequest.newBuilder(baseUri.resolve("/api/items")), "POST", "NEW", random);
+        }
+    },
+    UPDATE {
+        @Override
+        HttpRequest request(URI baseUri, long maxId, Random random) {
+            return json(HttpRequest.newBuilder(baseUri.resolve("/api/items/" + randomId(maxId, random))), "PUT", "UPDATED", random);
+        }
+    },
+    //Starts (or joins) an incremental processing job, the run itself goes on in the background
+    PROCESS {
+        @Override
+        HttpRequest request(URI baseUri, long maxId, Random random) {
+            return HttpRequest.newBuilder(baseUri.resolve("/api/items/process/jobs?incremental=true"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+        }
+    };
+
+    abstract HttpRequest request(URI baseUri, long maxId, Random random);
+
+    //Name used in the mix setting and in the report
+    String key() {
+        return name().toLowerCase();
+    }
+
+    private static long randomId(long maxId, Random random) {
+        return 1 + (long) (random.nextDouble() * maxId);
+    }
+
+    private static HttpRequest json(HttpRequest.Builder builder, String method, String status, Random random) {
+        int n = random.nextInt(1_000_000);
+        String body = "{\"name\":\"Load" + n + "\",\"description\":\"Load test item\",\"status\":\"" + status
+                + "\",\"email\":\"load" + n + "@example.com\"}";
+        return builder.header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.siemens.internship;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a load test run. Written as JSON, so two runs can be compared (see p99Regressions) and a run can be
+ * kept as the baseline of the next ones. Latencies are in microseconds and corrected for coordinated omission,
+ * serviceP99 is the uncorrected p99 for comparison.
+ */
+record LoadTestReport(Instant startedAt, double rate, long durationSeconds,
+                      Map<String, OperationStats> operations, OperationStats total) {
+
+    static final String TOTAL = "total";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    record OperationStats(long count, long rejected, long errors, double throughput,
+                          long p50, long p90, long p99, long p999, long max, long serviceP99) {
+
+        static OperationStats of(Histogram responseTime, Histogram serviceTime, long rejected, long errors, Duration duration) {
+            return new OperationStats(responseTime.getTotalCount(), rejected, errors,
+                    responseTime.getTotalCount() / (duration.toMillis() / 1000.0),
+                    responseTime.getValueAtPercentile(50), responseTime.getValueAtPercentile(90),
+                    responseTime.getValueAtPercentile(99), responseTime.getValueAtPercentile(99.9),
+                    responseTime.getMaxValue(), serviceTime.getValueAtPercentile(99));
+        }
+
+        double errorRate() {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+    }
+
+    static LoadTestReport of(Instant startedAt, double rate, Duration duration, Map<LoadOperation, LoadGenerator.Recording> recordings) {
+        Map<String, OperationStats> operations = new LinkedHashMap<>();
+        Histogram totalResponseTime = new Histogram(3);
+        Histogram totalServiceTime = new Histogram(3);
+        long rejected = 0;
+        long errors = 0;
+        for (Map.Entry<LoadOperation, LoadGenerator.Recording> entry : recordings.entrySet()) {
+            LoadGenerator.Recording recording = entry.getValue();
+            operations.put(entry.getKey().key(), OperationStats.of(recording.responseTime(), recording.serviceTime(),
+                    recording.rejected(), recording.errors(), duration));
+            totalResponseTime.add(recording.responseTime());
+            totalServiceTime.add(recording.serviceTime());
+            rejected += recording.rejected();
+            errors += recording.errors();
+        }
+        return new LoadTestReport(startedAt, rate, duration.toSeconds(), operations,
+                OperationStats.of(totalResponseTime, totalServiceTime, rejected, errors, duration));
+    }
+
+    static LoadTestReport read(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), LoadTestReport.class);
+    }
+
+    /**
+     * Writes name.json and name.hlog (the full response time histograms as an HdrHistogram log, for
+     * HistogramLogProcessor or the online plotters) into the directory.
+     */
+    void write(Path directory, String name, Map<LoadOperation, LoadGenerator.Recording> recordings) throws IOException {
+        Files.createDirectories(directory);
+        MAPPER.writeValue(directory.resolve(name + ".json").toFile(), this);
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hlog")))) {
+            HistogramLogWriter writer = new HistogramLogWriter(out);
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startedAt.toEpochMilli());
+            writer.outputLegend();
+            long endedAt = startedAt.toEpochMilli() + durationSeconds * 1000;
+            for (Map.Entry<LoadOperation, LoadGenerator.Recording> entry : recordings.entrySet()) {
+                Histogram histogram = entry.getValue().responseTime().copy();
+                histogram.setTag(entry.getKey().key());
+                histogram.setStartTimeStamp(startedAt.toEpochMilli());
+                histogram.setEndTimeStamp(endedAt);
+                writer.outputIntervalHistogram(histogram);
+            }
+        }
+    }
+
+    //Operations whose p99 is more than maxRegression (0.10 = 10%) above the one of the baseline
+    List<String> p99Regressions(LoadTestReport baseline, double maxRegression) {
+        List<String> regressions = new ArrayList<>();
+        Map<String, OperationStats> current = new LinkedHashMap<>(operations);
+        current.put(TOTAL, total);
+        Map<String, OperationStats> previous = new LinkedHashMap<>(baseline.operations);
+        previous.put(TOTAL, baseline.total);
+        current.forEach((operation, stats) -> {
+            OperationStats before = previous.get(operation);
+            if (before != null && stats.p99() > before.p99() * (1 + maxRegression)) {
+                regressions.add(String.format("%s p99 %dus, baseline %dus", operation, stats.p99(), before.p99()));
+            }
+        });
+        return regressions;
+    }
+
+    String summary() {
+        StringBuilder summary = new StringBuilder(String.format("%-8s %8s %8s %8s %10s %10s %10s %10s %10s%n",
+                "", "count", "4xx", "errors", "p50 us", "p99 us", "p99.9 us", "max us", "svc p99"));
+        Map<String, OperationStats> all = new LinkedHashMap<>(operations);
+        all.put(TOTAL, total);
+        all.forEach((operation, stats) -> summary.append(String.format("%-8s %8d %8d %8d %10d %10d %10d %10d %10d%n",
+                operation, stats.count(), stats.rejected(), stats.errors(), stats.p50(), stats.p99(), stats.p999(),
+                stats.max(), stats.serviceP99())));
+        return summary.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package com.siemens.internship;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from loadtest.* system properties (set by the loadtest profile, override them
+ * with -D on the Maven command line).
+ *
+ * @param rate               requests per second sent by the generator, whatever the server's response times are
+ * @param warmup             run before the measurement, not recorded
+ * @param duration           measured run
+ * @param maxInFlight        max requests waiting for a response, the generator waits (and the wait is counted) beyond that
+ * @param rows               items in the table before the run
+ * @param mix                relative weight of every operation
+ * @param reportDirectory    where the report and the histogram log are written
+ * @param baseline           report of an earlier run to compare with, null to skip the comparison
+ * @param maxP99Regression   allowed p99 increase over the baseline, 0.10 = 10%
+ * @param maxErrorRate       allowed share of failed requests (transport errors and 5xx)
+ */
+record LoadTestSettings(double rate, Duration warmup, Duration duration, int maxInFlight, int rows,
+                        Map<LoadOperation, Integer> mix, Path reportDirectory, Path baseline,
+                        double maxP99Regression, double maxErrorRate) {
+
+    static LoadTestSettings fromSystemProperties() {
+        String baseline = System.getProperty("loadtest.baseline", "");
+        return new LoadTestSettings(
+                Double.parseDouble(System.getProperty("loadtest.rate", "500")),
+                Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 10)),
+                Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 30)),
+                Integer.getInteger("loadtest.max-in-flight", 200),
+                Integer.getInteger("loadtest.rows", 10_000),
+                parseMix(System.getProperty("loadtest.mix", "get=70,list=10,create=10,update=9,process=1")),
+                Path.of(System.getProperty("loadtest.report-directory", "target/loadtest")),
+                baseline.isBlank() ? null : Path.of(baseline),
+                Double.parseDouble(System.getProperty("loadtest.max-p99-regression", "0.10")),
+                Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01")));
+    }
+
+    //"get=70,list=10" -> {GET=70, LIST=10}
+    static Map<LoadOperation, Integer> parseMix(String mix) {
+        Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(LoadOperation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operation: " + mix);
+        }
+        return weights;
+    }
+}
@@ -4,34 +4,64 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.validation.constraints.Pattern;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
+
 @Entity
+//status is used to find the items that still need processing, email for lookups and duplicate checks.
+//email is not unique on purpose: items were always allowed to share an email (several items per owner),
+//a unique constraint would break existing data on ddl-auto=update and reject valid creates and batches
+@Table(name = "item", indexes = {
+        @Index(name = "idx_item_status", columnList = "status"),
+        @Index(name = "idx_item_email", columnList = "email")
+})
+//Only the changed columns end up in the UPDATE statement
+@DynamicUpdate
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 public class Item {
+    //Pooled sequence: one sequence call hands out 50 ids, so inserts can be batched without a round trip per id
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+    @SequenceGenerator(name = "item_seq", sequenceName = "item_seq", allocationSize = 50)
     private Long id;
     private String name;
     private String description;
     private String status;
 
     // We could also use the @Email annotation for a simpler approach, but it allows a broader range of formats
-    //this regex ensures that only properly formatted emails are accepted
+    //@ValidEmail accepts exactly what ^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\.[a-zA-Z]{2,6}$ does, without running a regex
     @NotBlank(message = "Email can't be blank")
-    @Pattern(
-            regexp = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$",
-            message = "Invalid format for the emailz"
-    )
+    @ValidEmail(message = "Invalid format for the emailz")
     private String email;
 
+    //Optimistic locking: bumped on every update, an update based on an older version fails instead of overwriting
+    @Version
+    private Long version;
+
+    //Set by Hibernate on every insert and update, sent as the Last-Modified header instead of in the body
+    @UpdateTimestamp
+    @JsonIgnore
+    private Instant lastModified;
+
+    public Item(Long id, String name, String description, String status, String email) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.status = status;
+        this.email = email;
+    }
 }
\ No newline at end of file
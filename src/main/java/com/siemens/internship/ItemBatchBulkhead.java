@@ -0,0 +1,66 @@
+package com.siemens.internship;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * The database connections the batch work may hold at once, shared by every batch entry point: the id reads and
+ * chunks of the processing runs, the job counts, the sharding claims, export/import (and bulk create) and the
+ * write-behind flusher. Each takes a permit around the work that holds a connection, so together they never hold
+ * more than the pool minus the connections reserved for the interactive requests, whatever runs at the same time.
+ * <p>
+ * The permit has to be taken before the transaction starts, never while holding a connection. A thread that already
+ * holds one doesn't take a second, so nested calls can't wait on themselves.
+ */
+public class ItemBatchBulkhead {
+
+    private final Semaphore permits;
+    private final int size;
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+
+    public ItemBatchBulkhead(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1, was " + size);
+        }
+        this.size = size;
+        this.permits = new Semaphore(size);
+    }
+
+    //Runs the work with a permit, waiting for one if they are all taken
+    public <T> T call(Supplier<T> work) {
+        int[] depth = held.get();
+        if (depth[0] == 0) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); //Restore interrupted status
+                throw new RuntimeException("Interrupted while waiting for a batch connection", e);
+            }
+        }
+        depth[0]++;
+        try {
+            return work.get();
+        } finally {
+            if (--depth[0] == 0) {
+                permits.release();
+                held.remove();
+            }
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    //Permits taken right now
+    public int getInUse() {
+        return size - permits.availablePermits();
+    }
+}
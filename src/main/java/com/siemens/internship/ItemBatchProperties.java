@@ -0,0 +1,14 @@
+package com.siemens.internship;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "item.batch")
+public class ItemBatchProperties {
+
+    //How many valid items are inserted together (one transaction per batch)
+    private int size = 500;
+}
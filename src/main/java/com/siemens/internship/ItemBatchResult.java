@@ -0,0 +1,13 @@
+package com.siemens.internship;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk create: the ids of the created items and, for every rejected item,
+ * its position in the request and why it was rejected.
+ */
+public record ItemBatchResult(List<Long> createdIds, List<ItemError> errors) {
+
+    public record ItemError(int index, List<String> messages) {
+    }
+}
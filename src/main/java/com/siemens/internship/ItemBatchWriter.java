@@ -0,0 +1,129 @@
+package com.siemens.internship;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates a sequence of new items and inserts the valid ones in batches of item.batch.size.
+ * Invalid items are reported in the result and don't stop the rest of the sequence, and so are the items the database
+ * rejects (e.g. a value longer than its column): a batch that fails is inserted again item by item.
+ * The items are pulled one by one, so a large request body is never held in memory as a whole.
+ */
+@Slf4j
+@Component
+public class ItemBatchWriter {
+
+    private final ItemChunkProcessor chunkProcessor;
+    private final Validator validator;
+    private final ItemBatchProperties properties;
+    private final ItemBatchBulkhead bulkhead;
+
+    @Autowired
+    public ItemBatchWriter(ItemChunkProcessor chunkProcessor, Validator validator, ItemBatchProperties properties,
+                           ItemBatchBulkhead bulkhead) {
+        this.chunkProcessor = chunkProcessor;
+        this.bulkhead = bulkhead;
+        this.validator = validator;
+        this.properties = properties;
+    }
+
+    public ItemBatchResult write(Iterator<Item> items) {
+        int batchSize = Math.max(1, properties.getSize());
+        List<Item> batch = new ArrayList<>(batchSize);
+        //Position of every item of the batch in the sequence, for the errors of rejected inserts
+        List<Integer> batchIndexes = new ArrayList<>(batchSize);
+        List<Long> createdIds = new ArrayList<>();
+        List<ItemBatchResult.ItemError> errors = new ArrayList<>();
+
+        int index = 0;
+        while (true) {
+            Item item;
+            try {
+                if (!items.hasNext()) {
+                    break;
+                }
+                item = items.next();
+            } catch (RuntimeException e) {
+                //The input itself is broken (e.g. malformed JSON), nothing after this point can be read
+                errors.add(new ItemBatchResult.ItemError(index, List.of("Malformed item: " + e.getMessage())));
+                break;
+            }
+
+            List<String> messages = validate(item);
+            if (messages.isEmpty()) {
+                //Bulk create always creates new items, client supplied ids and versions are ignored
+                item.setId(null);
+                item.setVersion(null);
+                batch.add(item);
+                batchIndexes.add(index);
+                if (batch.size() == batchSize) {
+                    insert(batch, batchIndexes, createdIds, errors);
+                }
+            } else {
+                errors.add(new ItemBatchResult.ItemError(index, messages));
+            }
+            index++;
+        }
+        insert(batch, batchIndexes, createdIds, errors);
+        //The database errors of a batch are found after the validation errors of the items read after it
+        errors.sort(Comparator.comparingInt(ItemBatchResult.ItemError::index));
+
+        log.debug("Bulk create: {} items created, {} rejected", createdIds.size(), errors.size());
+        return new ItemBatchResult(createdIds, errors);
+    }
+
+    private List<String> validate(Item item) {
+        if (item == null) {
+            return List.of("Item can't be null");
+        }
+        Set<ConstraintViolation<Item>> violations = validator.validate(item);
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .toList();
+    }
+
+    //The driver's message without the SQL statement it usually appends on the next lines
+    private static String reason(DataAccessException e) {
+        String message = String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        return message.lines().findFirst().orElse(message);
+    }
+
+    private void insert(List<Item> batch, List<Integer> batchIndexes, List<Long> createdIds,
+                        List<ItemBatchResult.ItemError> errors) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (Item saved : bulkhead.call(() -> chunkProcessor.insertChunk(batch))) {
+                createdIds.add(saved.getId());
+            }
+        } catch (DataAccessException e) {
+            //The whole batch was rolled back, one by one only the items the database rejects are left out
+            log.debug("Batch of {} items rejected, inserting them one by one", batch.size(), e);
+            for (int i = 0; i < batch.size(); i++) {
+                Item item = batch.get(i);
+                //Set by the failed insert, the retry must insert again
+                item.setId(null);
+                item.setVersion(null);
+                try {
+                    createdIds.add(bulkhead.call(() -> chunkProcessor.insertChunk(List.of(item))).get(0).getId());
+                } catch (DataAccessException itemError) {
+                    errors.add(new ItemBatchResult.ItemError(batchIndexes.get(i), List.of("Rejected by the database: " + reason(itemError))));
+                }
+            }
+        }
+        batch.clear();
+        batchIndexes.clear();
+    }
+}
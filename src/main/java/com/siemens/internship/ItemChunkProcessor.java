@@ -0,0 +1,144 @@
+package com.siemens.internship;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Processes (or inserts) one chunk of items.
+ * <p>
+ * The whole chunk is loaded with one query, processed without a transaction (the steps can take long, and must
+ * not hold a connection meanwhile) and written in one short transaction. With hibernate.jdbc.batch_size configured
+ * the status updates go to the database as one JDBC batch.
+ * What processing an item means is up to the ItemProcessor steps of the chain.
+ * With item.processing.write-behind.enabled nothing is written here, the status updates are queued on
+ * ItemStatusWriteBehind with queueStatusUpdates instead.
+ */
+@Slf4j
+@Component
+public class ItemChunkProcessor {
+
+    private final ItemRepository itemRepository;
+    private final ItemJobResultRepository jobResultRepository;
+    private final ItemTableVersion tableVersion;
+    private final ItemProcessorChain processorChain;
+    private final TransactionTemplate transactionTemplate;
+    private final ItemBatchBulkhead bulkhead;
+    //null unless item.processing.write-behind.enabled
+    private final ItemStatusWriteBehind writeBehind;
+
+    @Autowired
+    public ItemChunkProcessor(ItemRepository itemRepository, ItemJobResultRepository jobResultRepository,
+                              ItemTableVersion tableVersion, ItemProcessorChain processorChain,
+                              TransactionTemplate transactionTemplate, ItemBatchBulkhead bulkhead,
+                              Optional<ItemStatusWriteBehind> writeBehind) {
+        this.itemRepository = itemRepository;
+        this.jobResultRepository = jobResultRepository;
+        this.tableVersion = tableVersion;
+        this.processorChain = processorChain;
+        this.transactionTemplate = transactionTemplate;
+        this.bulkhead = bulkhead;
+        this.writeBehind = writeBehind.orElse(null);
+    }
+
+    /**
+     * Loads, processes and writes the items of the chunk. Throws an OptimisticLockingFailureException (and writes
+     * nothing) if one of them was changed by someone else while it was processed.
+     * With a resultsJobId the written items are recorded as results of that job, in the same transaction.
+     */
+    public List<Item> processChunk(List<Long> ids, String resultsJobId) {
+        //Ids that were deleted in the meantime are simply not returned here, so they are skipped.
+        //Loaded in the repository's own read-only transaction, so the items are detached afterwards.
+        //The load and the write each hold a batch connection, the processing in between doesn't
+        List<Item> items = bulkhead.call(() -> itemRepository.findAllById(ids));
+
+        processorChain.apply(items);
+
+        if (writeBehind != null) {
+            //Only the status is written, see queueStatusUpdates
+            log.debug("Processed {} of {} items in chunk, their status is written behind", items.size(), ids.size());
+            return items;
+        }
+
+        List<Item> saved = write(items, resultsJobId);
+        log.debug("Processed {} of {} items in chunk", saved.size(), ids.size());
+        return saved;
+    }
+
+    /*
+     * The items are loaded again with one query and the changes of the steps copied onto the managed entities, instead
+     * of merging the detached ones (a SELECT per item). An item whose version moved on since it was processed fails
+     * the chunk, the UPDATE's own version check covers a change between this load and the commit.
+     * Items deleted while they were processed are left out.
+     */
+    private List<Item> write(List<Item> processed, String resultsJobId) {
+        return bulkhead.call(() -> transactionTemplate.execute(status -> {
+            Map<Long, Item> current = itemRepository.findAllById(processed.stream().map(Item::getId).toList()).stream()
+                    .collect(Collectors.toMap(Item::getId, Function.identity()));
+            List<Item> changed = new ArrayList<>(processed.size());
+            for (Item item : processed) {
+                Item managed = current.get(item.getId());
+                if (managed == null) {
+                    continue;
+                }
+                if (!Objects.equals(managed.getVersion(), item.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(Item.class, item.getId());
+                }
+                managed.setName(item.getName());
+                managed.setDescription(item.getDescription());
+                managed.setStatus(item.getStatus());
+                managed.setEmail(item.getEmail());
+                changed.add(managed);
+            }
+            //The entities are managed, so only the changed columns are written, without a SELECT per item
+            List<Item> saved = itemRepository.saveAll(changed);
+            if (resultsJobId != null) {
+                jobResultRepository.saveAll(saved.stream().map(item -> new ItemJobResult(resultsJobId, item.getId())).toList());
+            }
+            tableVersion.changed();
+            return saved;
+        }));
+    }
+
+    /**
+     * With write-behind, queues the status updates of a chunk processed by processChunk and waits while the queue
+     * is full. Called once the chunk is final (no more retries), by a task that holds no connection, so the flusher
+     * can always get one to drain the queue. Nothing to do without write-behind.
+     * With a resultsJobId the items are recorded as results of that job when their update is written.
+     * The updates that are not written are reported on the outcome (see ItemStatusWriteBehind.Outcome).
+     */
+    public void queueStatusUpdates(List<Item> items, String resultsJobId, ItemStatusWriteBehind.Outcome outcome) {
+        if (writeBehind != null) {
+            writeBehind.enqueue(items, resultsJobId, outcome);
+        }
+    }
+
+    //Waits until the queued status updates are written, nothing to do without write-behind
+    public void flushPending() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    //New items are persisted together, so with the pooled id sequence and hibernate.order_inserts
+    //they are sent as JDBC batch inserts instead of one round trip per item. Callers doing batch work (ItemBatchWriter)
+    //take the batch connection around it, see ItemBatchBulkhead
+    @Transactional
+    public List<Item> insertChunk(List<Item> items) {
+        List<Item> saved = itemRepository.saveAll(items);
+        tableVersion.changed();
+        log.debug("Inserted {} items", saved.size());
+        return saved;
+    }
+}
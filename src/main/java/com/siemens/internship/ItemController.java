@@ -1,26 +1,126 @@
 package com.siemens.internship;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/items")
 public class ItemController {
 
+    //Upper bound for the page size of the keyset listing
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    //The fields a fields=... parameter can ask for, answered with ItemSummary instead of full items
+    private static final Set<String> SUMMARY_FIELDS = Set.of("id", "name", "status");
+
     @Autowired
     private ItemService itemService;
 
+    @Autowired
+    private ItemBatchWriter itemBatchWriter;
+
+    @Autowired
+    private ItemProcessingJobService jobService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /*
+     * The list resources are conditional on the ETag of the whole table (see ItemTableVersion): a client sending it back
+     * in If-None-Match gets a 304 after one primary key lookup, without the list being loaded. There is no Last-Modified,
+     * a delete doesn't make any timestamp newer, so If-Modified-Since couldn't see it.
+     */
     @GetMapping
-    public ResponseEntity<List<Item>> getAllItems() {
-        return new ResponseEntity<>(itemService.findAll(), HttpStatus.OK);
+    public ResponseEntity<List<Item>> getAllItems(WebRequest request) {
+        String eTag = ItemTableVersion.eTag("items", itemService.findTableVersion());
+        if (request.checkNotModified(eTag)) {
+            return null; //304, already answered
+        }
+        return listResponse(eTag, itemService.findAll());
+    }
+
+    //GET /api/items?fields=id,name,status returns the lightweight summaries. Other fields are rejected with 400,
+    //the full items are GET /api/items without fields
+    @GetMapping(params = {"fields", "!limit"})
+    public ResponseEntity<List<ItemSummary>> getAllItemsWithFields(@RequestParam String fields, WebRequest request) {
+        if (!isSummary(fields)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        String eTag = ItemTableVersion.eTag("summaries", itemService.findTableVersion());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return listResponse(eTag, itemService.findAllSummaries());
+    }
+
+    //Keyset pagination: GET /api/items?limit=n[&after=cursor][&status=..][&email=..][&fields=..], fields as for getAllItemsWithFields
+    @GetMapping(params = "limit")
+    public ResponseEntity<ItemPage<?>> getItemsPage(@RequestParam(required = false) String after,
+                                                    @RequestParam int limit,
+                                                    @RequestParam(required = false) String status,
+                                                    @RequestParam(required = false) String email,
+                                                    @RequestParam(required = false) String fields,
+                                                    WebRequest request) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE || (fields != null && !isSummary(fields))) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        boolean summary = fields != null;
+        String eTag = ItemTableVersion.eTag(summary ? "summaries" : "items", itemService.findTableVersion());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        try {
+            ItemPage<?> page = summary
+                    ? itemService.findSummaryPage(after, limit, status, email)
+                    : itemService.findPage(after, limit, status, email);
+            return listResponse(eTag, page);
+        } catch (IllegalArgumentException e) {
+            //The cursor was not one we handed out
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    //Streams the items as they are read from the database, memory use doesn't depend on the table size
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllItems() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> writeItems(out, false));
+    }
+
+    //Same as above, but one JSON object per line (NDJSON)
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllItemsNdjson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> writeItems(out, true));
     }
 
     @PostMapping
@@ -33,24 +133,65 @@ public class ItemController {
         return new ResponseEntity<>(itemService.save(item), HttpStatus.CREATED);
     }
 
+    //Bulk create from a JSON array or NDJSON, invalid items are reported per index without failing the others
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ItemBatchResult> createItems(InputStream body) throws IOException {
+        //readValues handles both a root level array and a sequence of root level objects
+        try (MappingIterator<Item> items = objectMapper.readerFor(Item.class).readValues(body)) {
+            ItemBatchResult result = itemBatchWriter.write(items);
+            //201 if everything was created, 200 with the list of rejected items otherwise
+            return new ResponseEntity<>(result, result.errors().isEmpty() ? HttpStatus.CREATED : HttpStatus.OK);
+        }
+    }
+
+    //With If-None-Match or If-Modified-Since an unchanged item is answered with 304, without loading it
     @GetMapping("/{id}")
-    public ResponseEntity<Item> getItemById(@PathVariable Long id) {
+    public ResponseEntity<Item> getItemById(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            Optional<ItemVersion> version = itemService.findVersion(id);
+            if (version.isPresent() && request.checkNotModified(itemETag(version.get().version()),
+                    version.get().lastModified() != null ? version.get().lastModified().toEpochMilli() : -1)) {
+                return null; //304, already answered
+            }
+        }
         return itemService.findById(id)
-                .map(item -> new ResponseEntity<>(item, HttpStatus.OK))
+                .map(item -> withETag(item, HttpStatus.OK))
                 .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
         //I modified from NO_Content to NOT_Found if the id doesn't exist in our db
     }
 
+    //Replaces all fields. With If-Match "<version>" (the ETag of a GET without its W/) the update only happens if nobody
+    //changed the item since
     @PutMapping("/{id}")
-    public ResponseEntity<Item> updateItem(@PathVariable Long id, @RequestBody Item item) {
-        Optional<Item> existingItem = itemService.findById(id);
-        if (existingItem.isPresent()) {
-            item.setId(id);
+    public ResponseEntity<Item> updateItem(@PathVariable Long id, @RequestBody Item item,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return update(id, item, ifMatch, false);
+    }
+
+    //Only the fields present in the body are changed
+    @PatchMapping("/{id}")
+    public ResponseEntity<Item> patchItem(@PathVariable Long id, @RequestBody Item item,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return update(id, item, ifMatch, true);
+    }
+
+    private ResponseEntity<Item> update(Long id, Item item, String ifMatch, boolean partial) {
+        Long expectedVersion;
+        try {
+            expectedVersion = parseVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            //Not an ETag we handed out, so it can't match
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
+        try {
             //I changed from the CREATED status which is used for "CREATE" to OK which is suitable for UPDATE
-            return new ResponseEntity<>(itemService.save(item), HttpStatus.OK);
-        } else {
-            //If the user is not found we need to return 404(NOT_FOUND)
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            //If the item is not found we need to return 404(NOT_FOUND)
+            return itemService.update(id, item, expectedVersion, partial)
+                    .map(updated -> withETag(updated, HttpStatus.OK))
+                    .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        } catch (OptimisticLockingFailureException e) {
+            //412 if the client's If-Match didn't match, 409 if someone else updated the item at the same time
+            return new ResponseEntity<>(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT);
         }
     }
 
@@ -65,8 +206,142 @@ public class ItemController {
         }
     }
 
+    /**
+     * incremental=true only processes the items that are not PROCESSED yet.
+     * Returning the future makes it an async request: the servlet thread is released right away and the response
+     * is written when the run is done (within spring.mvc.async.request-timeout), instead of holding a worker
+     * thread for the whole run. 409 while a job of the same mode started through /process/jobs is running.
+     */
     @GetMapping("/process")
-    public ResponseEntity<CompletableFuture<List<Item>>> processItems() {
-        return new ResponseEntity<>(itemService.processItemsAsync(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<List<Item>>> processItems(@RequestParam(defaultValue = "false") boolean incremental) {
+        return itemService.processItemsAsync(incremental)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ItemProcessingConflictException) {
+                        return new ResponseEntity<>(HttpStatus.CONFLICT);
+                    }
+                    throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+                });
+    }
+
+    //Marks all unprocessed items as PROCESSED with one UPDATE, returns how many were updated.
+    //409 if the processing steps do more than that, the items need a processing run then
+    @PostMapping("/process/bulk")
+    public ResponseEntity<Map<String, Integer>> markAllProcessed() {
+        try {
+            return new ResponseEntity<>(Map.of("updated", itemService.markAllProcessed()), HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+
+    //Starts the processing in the background and returns right away (202) with the job to poll.
+    //With run=<id> this instance takes part in the sharded run of that id, together with the other instances given the same id.
+    //409 while a GET /process run of the same mode is going on
+    @PostMapping("/process/jobs")
+    public ResponseEntity<ItemProcessingJobStatus> startProcessingJob(@RequestParam(defaultValue = "false") boolean incremental,
+                                                                      @RequestParam(required = false) String run) {
+        ItemProcessingJob job;
+        try {
+            job = run == null ? jobService.start(incremental) : jobService.startSharded(run, incremental);
+        } catch (ItemProcessingConflictException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/items/process/jobs/" + job.getId()))
+                .body(job.status());
+    }
+
+    @GetMapping("/process/jobs/{id}")
+    public ResponseEntity<ItemProcessingJobStatus> getProcessingJob(@PathVariable String id) {
+        return jobService.find(id)
+                .map(job -> new ResponseEntity<>(job.status(), HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    //The items processed by the job so far in id order, with keyset pagination like GET /api/items?limit=n[&after=cursor]
+    @GetMapping("/process/jobs/{id}/results")
+    public ResponseEntity<ItemPage<Item>> getProcessingJobResults(@PathVariable String id,
+                                                                  @RequestParam(required = false) String after,
+                                                                  @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return jobService.findResults(id, after, limit)
+                    .map(page -> new ResponseEntity<>(page, HttpStatus.OK))
+                    .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        } catch (IllegalArgumentException e) {
+            //The cursor was not one we handed out
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    //The ETag is read before the body, so if the table changes in between the client just gets a newer body next time.
+    //no-cache lets clients and proxies keep the response, but they have to revalidate it before using it
+    private static <T> ResponseEntity<T> listResponse(String eTag, T body) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag)
+                .body(body);
+    }
+
+    //The ETag of an item is its version, Last-Modified its last change
+    private static ResponseEntity<Item> withETag(Item item, HttpStatus status) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).cacheControl(CacheControl.noCache());
+        if (item.getVersion() != null) {
+            builder.eTag(itemETag(item.getVersion()));
+        }
+        if (item.getLastModified() != null) {
+            builder.lastModified(item.getLastModified());
+        }
+        return builder.body(item);
+    }
+
+    //Weak like the list ETags: the same item is sent as JSON, CBOR or Smile and gzipped or not
+    private static String itemETag(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    //null for no If-Match or "*", throws IllegalArgumentException if it isn't one of our versions.
+    //If-Match compares strongly, so a weak tag never matches
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("Invalid ETag: " + ifMatch);
+        }
+        return Long.parseLong(tag.substring(1, tag.length() - 1));
+    }
+
+    private static boolean isSummary(String fields) {
+        return fields != null && Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .allMatch(SUMMARY_FIELDS::contains);
+    }
+
+    private void writeItems(OutputStream out, boolean ndjson) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            if (ndjson) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+            itemService.streamAll(item -> {
+                try {
+                    generator.writeObject(item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (ndjson) {
+                generator.writeRaw('\n');
+            } else {
+                generator.writeEndArray();
+            }
+        }
     }
 }
@@ -0,0 +1,114 @@
+package com.siemens.internship;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CSV format of the export and import (RFC 4180): a header line and one line per item.
+ * An empty field is null, "" is an empty string. id and version are exported, but a new item gets new ones on import.
+ */
+final class ItemCsv {
+
+    static final List<String> COLUMNS = List.of("id", "name", "description", "status", "email", "version");
+
+    private ItemCsv() {
+    }
+
+    static void writeHeader(Writer out) throws IOException {
+        out.write(String.join(",", COLUMNS));
+        out.write('\n');
+    }
+
+    static void write(Item item, Writer out) throws IOException {
+        writeField(item.getId() != null ? item.getId().toString() : null, out);
+        out.write(',');
+        writeField(item.getName(), out);
+        out.write(',');
+        writeField(item.getDescription(), out);
+        out.write(',');
+        writeField(item.getStatus(), out);
+        out.write(',');
+        writeField(item.getEmail(), out);
+        out.write(',');
+        writeField(item.getVersion() != null ? item.getVersion().toString() : null, out);
+        out.write('\n');
+    }
+
+    //Builds an item from a line, the header says which field is which. Throws IllegalArgumentException if it isn't valid CSV
+    static Item parse(CharSequence line, List<String> header) {
+        List<String> fields = split(line);
+        if (fields.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " fields, found " + fields.size());
+        }
+        Item item = new Item();
+        for (int i = 0; i < fields.size(); i++) {
+            String value = fields.get(i);
+            switch (header.get(i)) {
+                case "name" -> item.setName(value);
+                case "description" -> item.setDescription(value);
+                case "status" -> item.setStatus(value);
+                case "email" -> item.setEmail(value);
+                default -> {
+                    //id, version and unknown columns are not imported
+                }
+            }
+        }
+        return item;
+    }
+
+    static List<String> split(CharSequence line) {
+        List<String> fields = new ArrayList<>(COLUMNS.size());
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            field.setLength(0);
+            boolean quoted = i < length && line.charAt(i) == '"';
+            if (quoted) {
+                i++;
+                while (true) {
+                    if (i == length) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < length && line.charAt(i) == '"') {
+                        //"" inside quotes is one "
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < length && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected character after quoted field at " + i);
+                }
+            } else {
+                while (i < length && line.charAt(i) != ',') {
+                    field.append(line.charAt(i++));
+                }
+            }
+            fields.add(quoted || field.length() > 0 ? field.toString() : null);
+            if (i == length) {
+                return fields;
+            }
+            i++; //The ','
+        }
+    }
+
+    private static void writeField(String value, Writer out) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,29 @@
+package com.siemens.internship;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the position of a keyset page as an opaque token, so clients don't depend on it being an id.
+ */
+public final class ItemCursor {
+
+    private static final String PREFIX = "id:";
+
+    private ItemCursor() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Throws IllegalArgumentException if the token wasn't created by encode
+    public static long decode(String cursor) {
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (!value.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return Long.parseLong(value.substring(PREFIX.length()));
+    }
+}
@@ -0,0 +1,21 @@
+package com.siemens.internship;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+//File formats of the export and import, chosen by the file extension
+public enum ItemFileFormat {
+    NDJSON,
+    CSV;
+
+    public static ItemFileFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown item file format: " + file + ", use .ndjson, .jsonl or .csv");
+    }
+}
@@ -0,0 +1,37 @@
+package com.siemens.internship;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * One item written by a job of the jobs API (ItemProcessingJobService), recorded in the same transaction as the item
+ * itself, so a job's results are exactly the items it processed. Read back in item id order (keyset on itemId) and
+ * deleted when the job expires.
+ */
+@Entity
+@Table(name = "item_job_result", indexes = @Index(name = "idx_item_job_result_job", columnList = "jobId, itemId"))
+@Getter
+@NoArgsConstructor
+public class ItemJobResult {
+
+    //jobId/itemId
+    @Id
+    private String id;
+    private String jobId;
+    private long itemId;
+
+    //null until persisted, so saveAll inserts without a SELECT per row
+    @Version
+    private Long version;
+
+    public ItemJobResult(String jobId, long itemId) {
+        this.id = jobId + "/" + itemId;
+        this.jobId = jobId;
+        this.itemId = itemId;
+    }
+}
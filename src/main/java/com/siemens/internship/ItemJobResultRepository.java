@@ -0,0 +1,23 @@
+package com.siemens.internship;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ItemJobResultRepository extends JpaRepository<ItemJobResult, String> {
+
+    //Keyset page of the items the job processed, as they are now. Items deleted since are left out
+    @Query("SELECT i FROM ItemJobResult r JOIN Item i ON i.id = r.itemId WHERE r.jobId = :jobId AND r.itemId > :afterId ORDER BY r.itemId")
+    List<Item> findItemsAfter(@Param("jobId") String jobId, @Param("afterId") long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ItemJobResult r WHERE r.jobId IN :jobIds")
+    int deleteByJobIds(@Param("jobIds") Collection<String> jobIds);
+}
@@ -0,0 +1,102 @@
+package com.siemens.internship;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file line by line through its channel into one reusable buffer, so the allocation doesn't depend on
+ * the file size. A line is only valid until the next call of next().
+ * <p>
+ * In quote aware mode (CSV) a line break between double quotes belongs to the line.
+ */
+class ItemLineReader {
+
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private final boolean quoteAware;
+
+    //File position of buffer[0]
+    private long bufferPosition;
+    private int limit;
+    private int lineStart;
+    private int lineLength;
+    private int nextStart;
+    private boolean endOfFile;
+
+    ItemLineReader(FileChannel channel, long position, int maxLineLength, boolean quoteAware) {
+        this.channel = channel;
+        this.buffer = new byte[maxLineLength];
+        this.quoteAware = quoteAware;
+        this.bufferPosition = position;
+    }
+
+    //Moves to the next line, false at the end of the file
+    boolean next() throws IOException {
+        int scan = nextStart;
+        boolean inQuotes = false;
+        while (true) {
+            for (; scan < limit; scan++) {
+                byte b = buffer[scan];
+                if (b == '"' && quoteAware) {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    setLine(nextStart, scan, scan + 1);
+                    return true;
+                }
+            }
+            if (endOfFile) {
+                if (nextStart == limit) {
+                    return false;
+                }
+                //The last line doesn't end with a line break
+                setLine(nextStart, limit, limit);
+                return true;
+            }
+            scan -= nextStart;
+            fill();
+        }
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int start() {
+        return lineStart;
+    }
+
+    int length() {
+        return lineLength;
+    }
+
+    //File position right after the current line, where a resumed import starts
+    long endPosition() {
+        return bufferPosition + nextStart;
+    }
+
+    private void setLine(int start, int end, int next) {
+        lineStart = start;
+        lineLength = end > start && buffer[end - 1] == '\r' ? end - start - 1 : end - start;
+        nextStart = next;
+    }
+
+    //Moves the unread bytes to the front of the buffer and reads more after them
+    private void fill() throws IOException {
+        if (nextStart > 0) {
+            System.arraycopy(buffer, nextStart, buffer, 0, limit - nextStart);
+            bufferPosition += nextStart;
+            limit -= nextStart;
+            nextStart = 0;
+        }
+        if (limit == buffer.length) {
+            throw new IOException("Line at position " + bufferPosition + " is longer than " + buffer.length + " bytes");
+        }
+        int read = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit), bufferPosition + limit);
+        if (read < 0) {
+            endOfFile = true;
+        } else {
+            limit += read;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.siemens.internship;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset listing, of full items or of summaries.
+ * nextCursor is null on the last page, otherwise it is passed back as "after" to get the next page.
+ */
+public record ItemPage<T>(List<T> items, String nextCursor) {
+
+    //rows holds up to limit + 1 rows, the extra one only tells us that there is a next page
+    static <T> ItemPage<T> of(List<T> rows, int limit, Function<T, Long> idOf) {
+        if (rows.size() <= limit) {
+            return new ItemPage<>(rows, null);
+        }
+        List<T> page = rows.subList(0, limit);
+        return new ItemPage<>(page, ItemCursor.encode(idOf.apply(page.get(limit - 1))));
+    }
+}
@@ -0,0 +1,46 @@
+package com.siemens.internship;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One id range of a sharded processing run: the items with rangeStart < id <= rangeEnd.
+ * A node owns the partition while leaseUntil is in the future, after that (node gone) any node can claim it again.
+ * Only changed through the conditional updates of ItemPartitionLeaseRepository, never saved after it was created.
+ */
+@Entity
+@Table(name = "item_partition_lease", indexes = @Index(name = "idx_item_partition_lease_run", columnList = "runId"))
+@Getter
+@NoArgsConstructor
+public class ItemPartitionLease {
+
+    //runId/partitionNo, the same on every node, so two nodes planning the same run can't both insert a partition
+    @Id
+    private String id;
+    private String runId;
+    private long partitionNo;
+    private long rangeStart;
+    private long rangeEnd;
+    private String owner;
+    private Instant leaseUntil;
+    private boolean done;
+
+    //null until persisted, so save() inserts instead of merging into a partition another node already planned
+    @Version
+    private Long version;
+
+    public ItemPartitionLease(String runId, long partitionNo, long partitionSize) {
+        this.id = runId + "/" + partitionNo;
+        this.runId = runId;
+        this.partitionNo = partitionNo;
+        this.rangeStart = partitionNo * partitionSize;
+        this.rangeEnd = rangeStart + partitionSize;
+    }
+}
@@ -0,0 +1,51 @@
+package com.siemens.internship;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The claims are conditional UPDATEs: the row is only changed if it is still claimable (or still ours), so when
+ * several nodes go for the same partition exactly one of them gets 1 back. Every update runs and commits on its own.
+ */
+public interface ItemPartitionLeaseRepository extends JpaRepository<ItemPartitionLease, String> {
+
+    //Partitions nobody works on right now, free or with an expired lease
+    @Query("SELECT l FROM ItemPartitionLease l WHERE l.runId = :runId AND l.done = false" +
+            " AND (l.owner IS NULL OR l.leaseUntil < :now) ORDER BY l.partitionNo")
+    List<ItemPartitionLease> findClaimable(@Param("runId") String runId, @Param("now") Instant now, Pageable pageable);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ItemPartitionLease l SET l.owner = :owner, l.leaseUntil = :leaseUntil, l.version = l.version + 1" +
+            " WHERE l.id = :id AND l.done = false AND (l.owner IS NULL OR l.leaseUntil < :now)")
+    int claim(@Param("id") String id, @Param("owner") String owner, @Param("leaseUntil") Instant leaseUntil, @Param("now") Instant now);
+
+    //0 when the lease expired and another node took the partition over
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ItemPartitionLease l SET l.leaseUntil = :leaseUntil, l.version = l.version + 1" +
+            " WHERE l.id = :id AND l.owner = :owner AND l.done = false")
+    int renew(@Param("id") String id, @Param("owner") String owner, @Param("leaseUntil") Instant leaseUntil);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ItemPartitionLease l SET l.done = true, l.version = l.version + 1 WHERE l.id = :id AND l.owner = :owner")
+    int complete(@Param("id") String id, @Param("owner") String owner);
+
+    //Gives the partition back without marking it done, so it is claimable again right away
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ItemPartitionLease l SET l.owner = NULL, l.leaseUntil = NULL, l.version = l.version + 1" +
+            " WHERE l.id = :id AND l.owner = :owner AND l.done = false")
+    int release(@Param("id") String id, @Param("owner") String owner);
+
+    @Query("SELECT COALESCE(MAX(l.partitionNo), -1L) FROM ItemPartitionLease l WHERE l.runId = :runId")
+    long findLastPartitionNo(@Param("runId") String runId);
+}
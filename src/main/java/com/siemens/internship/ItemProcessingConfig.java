@@ -0,0 +1,105 @@
+package com.siemens.internship;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class ItemProcessingConfig {
+
+    //The batch work gets the connections that are not reserved for the interactive requests, so it can never
+    //leave CRUD without a connection, however many runs, exports and flushes go on at once
+    @Bean
+    public ItemBatchBulkhead itemBatchBulkhead(ItemProcessingProperties properties, MeterRegistry meterRegistry,
+                                               @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize) {
+        ItemBatchBulkhead bulkhead = new ItemBatchBulkhead(Math.max(1, connectionPoolSize - properties.getReservedConnections()));
+        Gauge.builder("item.batch.connections.active", bulkhead, ItemBatchBulkhead::getInUse)
+                .description("Connections held by batch work right now")
+                .register(meterRegistry);
+        Gauge.builder("item.batch.connections.max", bulkhead, ItemBatchBulkhead::getSize)
+                .description("Max connections held by batch work at once")
+                .register(meterRegistry);
+        return bulkhead;
+    }
+
+    @Bean
+    public ItemProcessingExecutor itemProcessingExecutor(ItemProcessingProperties properties, MeterRegistry meterRegistry,
+                                                         ItemBatchBulkhead bulkhead) {
+        //The chunks only hold a connection while they load and write (see ItemChunkProcessor), by default
+        //as many run at once as there are batch connections
+        int maxConcurrency = properties.getMaxConcurrency() > 0 ? properties.getMaxConcurrency() : bulkhead.getSize();
+
+        ExecutorService delegate = switch (properties.getExecutor()) {
+            case PLATFORM -> Executors.newFixedThreadPool(properties.getPoolSize(), new CustomizableThreadFactory("item-processing-"));
+            case VIRTUAL -> newVirtualThreadPerTaskExecutor();
+        };
+        ItemProcessingExecutor executor = new ItemProcessingExecutor(delegate, maxConcurrency);
+
+        Gauge.builder("item.processing.executor.active", executor, ItemProcessingExecutor::getActiveCount)
+                .description("Processing tasks running right now")
+                .register(meterRegistry);
+        Gauge.builder("item.processing.executor.queued", executor, ItemProcessingExecutor::getQueuedCount)
+                .description("Processing tasks waiting for a thread or a permit")
+                .register(meterRegistry);
+        Gauge.builder("item.processing.executor.max", executor, ItemProcessingExecutor::getMaxConcurrency)
+                .description("Max processing tasks running at once")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    @Bean
+    public ItemProcessingCoordinator itemProcessingCoordinator(ItemProcessingProperties properties) {
+        return new ItemProcessingCoordinator(Executors.newFixedThreadPool(properties.getCoordinatorPoolSize(),
+                new CustomizableThreadFactory("item-coordinator-")));
+    }
+
+    @Bean
+    public ItemProcessorChain itemProcessorChain(List<ItemProcessor> processors, ItemProcessingProperties properties,
+                                                 MeterRegistry meterRegistry) {
+        int parallelism = properties.getCpuParallelism() > 0
+                ? properties.getCpuParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        ExecutorService ioExecutor = switch (properties.getExecutor()) {
+            case PLATFORM -> Executors.newFixedThreadPool(properties.getIoPoolSize(), new CustomizableThreadFactory("item-io-"));
+            case VIRTUAL -> newVirtualThreadPerTaskExecutor();
+        };
+        //The list is already sorted by @Order
+        return new ItemProcessorChain(processors, new ForkJoinPool(parallelism), ioExecutor, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "item.processing.write-behind.enabled", havingValue = "true")
+    public ItemStatusWriteBehind itemStatusWriteBehind(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                                       ItemTableVersion tableVersion, ItemBatchBulkhead bulkhead,
+                                                       CacheManager cacheManager, ItemProcessingProperties properties,
+                                                       MeterRegistry meterRegistry) {
+        ItemProcessingProperties.WriteBehind writeBehind = properties.getWriteBehind();
+        return new ItemStatusWriteBehind(jdbcTemplate, new TransactionTemplate(transactionManager), tableVersion, bulkhead,
+                cacheManager.getCache(ItemService.ITEM_CACHE), writeBehind.getCapacity(), writeBehind.getBatchSize(),
+                writeBehind.getFlushInterval(), meterRegistry);
+    }
+
+    //Looked up by reflection, so the project still builds on Java 17 (the VIRTUAL mode needs a Java 21 runtime)
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("item.processing.executor=VIRTUAL needs Java 21, build and run with -Pjava21", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the virtual thread executor", e);
+        }
+    }
+}
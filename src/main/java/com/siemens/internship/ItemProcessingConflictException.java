@@ -0,0 +1,12 @@
+package com.siemens.internship;
+
+/**
+ * Thrown when a processing run can't start because a run of the same mode was started by another entry point
+ * (see ItemProcessingRuns). Runs started the same way are joined instead.
+ */
+public class ItemProcessingConflictException extends RuntimeException {
+
+    public ItemProcessingConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,39 @@
+package com.siemens.internship;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the coordination of the processing runs: the pipeline sources that read the ids and feed the chunks to the
+ * ItemProcessingExecutor, the start of the jobs and the partition claims of sharded runs.
+ * A source blocks while its pipeline is full, so these get a small pool of their own instead of sharing
+ * applicationTaskExecutor with the async MVC requests and /stream. Runs beyond the pool size wait for a thread.
+ * <p>
+ * Like ItemProcessingExecutor this doesn't implement Executor, so it doesn't replace Spring Boot's applicationTaskExecutor.
+ * Pass coordinator::execute where an Executor is needed.
+ */
+public class ItemProcessingCoordinator implements AutoCloseable {
+
+    private final ExecutorService delegate;
+
+    public ItemProcessingCoordinator(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    public void execute(Runnable task) {
+        delegate.execute(task);
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(30, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.siemens.internship;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the item processing tasks on the configured executor, with at most maxConcurrency of them running at once,
+ * so a virtual thread executor (which has no thread limit of its own) can't start a task per chunk of the table.
+ * Their connections are limited by the ItemBatchBulkhead, together with the rest of the batch work.
+ * <p>
+ * On purpose this doesn't implement Executor, so it doesn't replace Spring Boot's applicationTaskExecutor.
+ */
+public class ItemProcessingExecutor implements AutoCloseable {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public ItemProcessingExecutor(ExecutorService delegate, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1, was " + maxConcurrency);
+        }
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        queued.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); //Restore interrupted status
+                    throw new RuntimeException("Interrupted while waiting for a processing slot", e);
+                } finally {
+                    queued.decrementAndGet();
+                }
+                try {
+                    return task.get();
+                } finally {
+                    permits.release();
+                }
+            }, delegate);
+        } catch (RuntimeException e) {
+            //Rejected by the delegate (e.g. during shutdown), the task will never run
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    //Tasks that were submitted but are still waiting for a thread or a permit
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    //Tasks that are running right now
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(30, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.siemens.internship;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one processing run. The counters are updated by the processing tasks while the run goes on,
+ * so everything here is safe to read and update from several threads.
+ * Only counts are kept, not the processed items, so a job costs the same however many items it goes through.
+ */
+public class ItemProcessingJob {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile long total;
+    private volatile State state = State.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    void chunkProcessed(List<Long> ids, List<Item> items) {
+        processed.addAndGet(items.size());
+        skipped.addAndGet(ids.size() - items.size());
+    }
+
+    void chunkFailed(List<Long> ids) {
+        failed.addAndGet(ids.size());
+    }
+
+    //Processed items whose status could not be written after all (see ItemStatusWriteBehind)
+    void writeFailed(List<Long> ids) {
+        processed.addAndGet(-ids.size());
+        failed.addAndGet(ids.size());
+    }
+
+    void complete() {
+        finishedAt = Instant.now();
+        state = State.COMPLETED;
+    }
+
+    void fail(Throwable cause) {
+        error = cause.getMessage();
+        finishedAt = Instant.now();
+        state = State.FAILED;
+    }
+
+    public ItemProcessingJobStatus status() {
+        long done = processed.get() + skipped.get() + failed.get();
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        double seconds = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+        double itemsPerSecond = done / seconds;
+
+        Long etaSeconds = null;
+        if (state == State.RUNNING && itemsPerSecond > 0) {
+            etaSeconds = (long) Math.ceil(Math.max(total - done, 0) / itemsPerSecond);
+        }
+        return new ItemProcessingJobStatus(id, state, total, processed.get(), skipped.get(), failed.get(),
+                itemsPerSecond, etaSeconds, startedAt, finishedAt, error);
+    }
+}
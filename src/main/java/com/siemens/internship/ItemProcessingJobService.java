@@ -0,0 +1,123 @@
+package com.siemens.internship;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Starts processing runs in the background and keeps track of them, so the caller gets a job id right away
+ * instead of waiting for the whole run. Finished jobs are forgotten after item.processing.job-retention.
+ */
+@Slf4j
+@Service
+public class ItemProcessingJobService {
+
+    private final ItemService itemService;
+    private final ItemShardingService shardingService;
+    private final ItemJobResultRepository jobResultRepository;
+    private final ItemProcessingProperties properties;
+    //Only reads the ids and submits the chunks, the chunks themselves run on the processing executor
+    private final ItemProcessingCoordinator coordinator;
+    private final ItemBatchBulkhead bulkhead;
+    //The runs going on, shared with ItemService.processItemsAsync
+    private final ItemProcessingRuns runs;
+    private final Map<String, ItemProcessingJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ItemProcessingJobService(ItemService itemService, ItemShardingService shardingService, ItemJobResultRepository jobResultRepository,
+                                    ItemProcessingProperties properties, ItemProcessingCoordinator coordinator,
+                                    ItemBatchBulkhead bulkhead, ItemProcessingRuns runs) {
+        this.itemService = itemService;
+        this.shardingService = shardingService;
+        this.jobResultRepository = jobResultRepository;
+        this.properties = properties;
+        this.coordinator = coordinator;
+        this.bulkhead = bulkhead;
+        this.runs = runs;
+    }
+
+    /**
+     * incremental: only the items that are not PROCESSED yet.
+     * While a job of the same mode is running, that job is returned instead of starting a second run over the same rows.
+     * Throws ItemProcessingConflictException while a run of the same mode started by GET /process is going on.
+     */
+    public ItemProcessingJob start(boolean incremental) {
+        return start(ItemProcessingRuns.mode(incremental), job -> {
+            job.setTotal(bulkhead.call(() -> itemService.countItemsToProcess(incremental)));
+            return itemService.processItems(job, incremental);
+        });
+    }
+
+    /**
+     * Takes part in the sharded run with the given id (see ItemShardingService), the other instances started with the
+     * same id split the items with this one. The job only counts what this instance processed, so it has no total.
+     */
+    public ItemProcessingJob startSharded(String runId, boolean incremental) {
+        return start(ItemProcessingRuns.mode(incremental) + "@" + runId,
+                job -> shardingService.process(job, runId, incremental, coordinator::execute));
+    }
+
+    private ItemProcessingJob start(String mode, Function<ItemProcessingJob, CompletableFuture<Void>> run) {
+        removeExpiredJobs();
+
+        ItemProcessingJob job = new ItemProcessingJob();
+        Object running = runs.register(mode, job);
+        if (running instanceof ItemProcessingJob runningJob) {
+            return runningJob;
+        }
+        if (running != null) {
+            throw new ItemProcessingConflictException("A " + mode + " processing run started by GET /process is going on");
+        }
+        jobs.put(job.getId(), job);
+        CompletableFuture.supplyAsync(() -> run.apply(job), coordinator::execute)
+                .thenCompose(future -> future)
+                .whenComplete((v, error) -> {
+                    runs.finished(mode, job);
+                    if (error == null) {
+                        job.complete();
+                    } else {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        log.error("Processing job {} failed", job.getId(), cause);
+                        job.fail(cause);
+                    }
+                });
+        return job;
+    }
+
+    public Optional<ItemProcessingJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * The items processed by the job with an id after the cursor, in id order (see ItemService.findPage for the
+     * cursor). They are read from the ItemJobResult rows the job wrote with its items, the job itself keeps no ids.
+     * Items deleted since then are left out. Throws IllegalArgumentException for a cursor that is not one of ours.
+     */
+    public Optional<ItemPage<Item>> findResults(String id, String cursor, int limit) {
+        long afterId = ItemService.decodeCursor(cursor);
+        return find(id).map(job -> ItemPage.of(
+                jobResultRepository.findItemsAfter(job.getId(), afterId, PageRequest.of(0, limit + 1)), limit, Item::getId));
+    }
+
+    private void removeExpiredJobs() {
+        Instant expiredBefore = Instant.now().minus(properties.getJobRetention());
+        List<String> expired = jobs.values().stream()
+                .filter(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(expiredBefore))
+                .map(ItemProcessingJob::getId)
+                .toList();
+        if (!expired.isEmpty()) {
+            jobResultRepository.deleteByJobIds(expired);
+            jobs.keySet().removeAll(expired);
+        }
+    }
+}
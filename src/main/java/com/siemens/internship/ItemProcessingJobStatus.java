@@ -0,0 +1,20 @@
+package com.siemens.internship;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of an ItemProcessingJob as returned by the jobs API.
+ * etaSeconds is only set while the job is running and has made some progress.
+ */
+public record ItemProcessingJobStatus(String id,
+                                      ItemProcessingJob.State state,
+                                      long total,
+                                      long processed,
+                                      long skipped,
+                                      long failed,
+                                      double itemsPerSecond,
+                                      Long etaSeconds,
+                                      Instant startedAt,
+                                      Instant finishedAt,
+                                      String error) {
+}
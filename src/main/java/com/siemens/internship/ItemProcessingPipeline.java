@@ -0,0 +1,119 @@
+package com.siemens.internship;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the processing as a pipeline: id source -> bounded buffer -> chunk stage (fetch, transform, batched write) -> sink.
+ * <p>
+ * The subscriber only asks for a new chunk when one of its depth in-flight chunks is done, and the publisher
+ * buffers at most depth chunks, after that submit blocks the source. So at any time there are at most about
+ * 2 * depth chunks of ids in memory, however many items there are.
+ */
+class ItemProcessingPipeline {
+
+    private final Supplier<List<Long>> source;
+    private final Function<List<Long>, CompletableFuture<List<Item>>> stage;
+    private final int depth;
+
+    /**
+     * @param source returns the next chunk of ids, an empty list when there are no more
+     * @param stage  processes one chunk asynchronously
+     * @param depth  max chunks in flight
+     */
+    ItemProcessingPipeline(Supplier<List<Long>> source, Function<List<Long>, CompletableFuture<List<Item>>> stage, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1, was " + depth);
+        }
+        this.source = source;
+        this.stage = stage;
+        this.depth = depth;
+    }
+
+    /**
+     * Starts the pipeline, the source is read on the given executor.
+     * The future completes when every chunk is done. A failed chunk goes to onFailure and doesn't stop the others,
+     * only a failing source completes the future exceptionally.
+     */
+    CompletableFuture<Void> run(Executor sourceExecutor, Consumer<List<Item>> sink, BiConsumer<List<Long>, Throwable> onFailure) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        SubmissionPublisher<List<Long>> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), depth);
+        publisher.subscribe(new ChunkSubscriber(done, sink, onFailure));
+
+        sourceExecutor.execute(() -> {
+            try {
+                List<Long> chunk;
+                while (!(chunk = source.get()).isEmpty()) {
+                    //Blocks while the buffer is full, this is where the backpressure reaches the source
+                    publisher.submit(chunk);
+                }
+                publisher.close();
+            } catch (Throwable e) {
+                publisher.closeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    private class ChunkSubscriber implements Flow.Subscriber<List<Long>> {
+
+        private final CompletableFuture<Void> done;
+        private final Consumer<List<Item>> sink;
+        private final BiConsumer<List<Long>, Throwable> onFailure;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean sourceCompleted;
+        private Flow.Subscription subscription;
+
+        ChunkSubscriber(CompletableFuture<Void> done, Consumer<List<Item>> sink, BiConsumer<List<Long>, Throwable> onFailure) {
+            this.done = done;
+            this.sink = sink;
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(depth);
+        }
+
+        @Override
+        public void onNext(List<Long> ids) {
+            inFlight.incrementAndGet();
+            stage.apply(ids).whenComplete((items, error) -> {
+                if (error == null) {
+                    sink.accept(items);
+                } else {
+                    onFailure.accept(ids, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+                //One chunk less in flight, so there is room for the next one
+                if (inFlight.decrementAndGet() == 0 && sourceCompleted) {
+                    done.complete(null);
+                }
+                subscription.request(1);
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            sourceCompleted = true;
+            if (inFlight.get() == 0) {
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.siemens.internship;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "item.processing")
+public class ItemProcessingProperties {
+
+    //How many items are read, loaded and written together (one transaction per chunk)
+    private int chunkSize = 100;
+
+    //Simulated processing delay for every item, in milliseconds
+    private long delayMs = 100;
+
+    //PLATFORM: fixed pool of poolSize threads, VIRTUAL: one virtual thread per task (Java 21)
+    private ExecutorMode executor = ExecutorMode.PLATFORM;
+
+    private int poolSize = 10;
+
+    //Max tasks running at the same time, 0 means as many as there are batch connections (see reservedConnections)
+    private int maxConcurrency = 0;
+
+    //Connections the batch work never uses, they are kept for the interactive requests (see ItemBatchBulkhead)
+    private int reservedConnections = 4;
+
+    //Threads of the ForkJoinPool running the CPU bound processing steps, 0 means the number of cores
+    private int cpuParallelism = 0;
+
+    //Threads running the IO bound processing steps (PLATFORM mode only, VIRTUAL uses a virtual thread per step)
+    private int ioPoolSize = 50;
+
+    //Threads reading the ids of the runs that are going on (see ItemProcessingCoordinator), one per run
+    private int coordinatorPoolSize = 4;
+
+    //Max chunks read but not finished yet, 0 means twice the max concurrency
+    private int pipelineDepth = 0;
+
+    //How often a chunk is retried when an item was changed by someone else in the meantime
+    private int maxRetries = 3;
+
+    //How long finished jobs of the jobs API are kept around
+    private Duration jobRetention = Duration.ofHours(1);
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private Sharding sharding = new Sharding();
+
+    public enum ExecutorMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    //Status updates queued and written in batches by ItemStatusWriteBehind instead of in the chunk's transaction
+    @Getter
+    @Setter
+    public static class WriteBehind {
+
+        private boolean enabled = false;
+
+        //Max updates waiting, a chunk waits when the buffer is full
+        private int capacity = 10_000;
+
+        //Updates per batch UPDATE, a full batch is written right away
+        private int batchSize = 500;
+
+        //Max time an update waits when the batch doesn't fill up
+        private Duration flushInterval = Duration.ofMillis(200);
+    }
+
+    //Sharded runs (ItemShardingService): several instances on one database split the items by id range
+    @Getter
+    @Setter
+    public static class Sharding {
+
+        //Ids per partition, the unit of work one instance claims at a time
+        private long partitionSize = 10_000;
+
+        //A claimed partition is given to another instance when its owner didn't renew the lease for this long.
+        //Renewed before every chunk, so it only has to be longer than a chunk (and the clock skew between the instances)
+        private Duration leaseDuration = Duration.ofMinutes(2);
+
+        //Owner name of this instance in item_partition_lease, blank means a random one per start
+        private String nodeId = "";
+    }
+}
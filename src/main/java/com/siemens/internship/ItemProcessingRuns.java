@@ -0,0 +1,34 @@
+package com.siemens.internship;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The single-flight guard of the processing runs, shared by every way to start one (GET /process through
+ * ItemService.processItemsAsync, the jobs API and sharded runs through ItemProcessingJobService): at most one run
+ * per mode ("full", "incremental", or the mode and run id of a sharded run) at a time, whichever entry point
+ * started it.
+ */
+@Component
+public class ItemProcessingRuns {
+
+    private final Map<String, Object> running = new ConcurrentHashMap<>();
+
+    public static String mode(boolean incremental) {
+        return incremental ? "incremental" : "full";
+    }
+
+    /**
+     * Registers run as the running one of the mode and returns null, or returns the run already going on (then
+     * nothing is registered). Register before starting the run, a run can complete right away and call finished.
+     */
+    public Object register(String mode, Object run) {
+        return running.putIfAbsent(mode, run);
+    }
+
+    public void finished(String mode, Object run) {
+        running.remove(mode, run);
+    }
+}
@@ -0,0 +1,27 @@
+package com.siemens.internship;
+
+/**
+ * One step of the item processing. Every ItemProcessor bean is applied to every item, in the order of their @Order.
+ * <p>
+ * A step runs on a worker thread, without a transaction, and only changes the item it gets (the changes are
+ * written together once every item of the chunk is done). So it must not use the repository or the EntityManager.
+ */
+public interface ItemProcessor {
+
+    void process(Item item);
+
+    //true if the step does nothing a bulk status UPDATE (POST /api/items/process/bulk) doesn't do, so it can be skipped there
+    default boolean coveredByBulkUpdate() {
+        return false;
+    }
+
+    //CPU_BOUND steps run on a ForkJoinPool sized to the cores, IO_BOUND ones (mostly waiting) on the IO executor
+    default Kind kind() {
+        return Kind.CPU_BOUND;
+    }
+
+    enum Kind {
+        CPU_BOUND,
+        IO_BOUND
+    }
+}
@@ -0,0 +1,88 @@
+package com.siemens.internship;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the ItemProcessor steps to the items of a chunk.
+ * <p>
+ * Every item goes through the steps on its own, so the items of a chunk are processed in parallel and an item
+ * doesn't wait for the others before its next step. Each step runs on the pool matching its kind, and is
+ * timed as item.processing.step (tagged with the step) to find the slow one.
+ */
+public class ItemProcessorChain implements AutoCloseable {
+
+    private final List<Step> steps;
+    private final ExecutorService cpuPool;
+    private final ExecutorService ioExecutor;
+    private final Timer itemTimer;
+
+    /**
+     * @param processors the steps, in the order they are applied
+     * @param cpuPool    runs the CPU_BOUND steps, usually a ForkJoinPool
+     * @param ioExecutor runs the IO_BOUND steps
+     */
+    public ItemProcessorChain(List<ItemProcessor> processors, ExecutorService cpuPool, ExecutorService ioExecutor,
+                              MeterRegistry meterRegistry) {
+        this.cpuPool = cpuPool;
+        this.ioExecutor = ioExecutor;
+        this.steps = processors.stream()
+                .map(processor -> new Step(processor,
+                        processor.kind() == ItemProcessor.Kind.IO_BOUND ? ioExecutor : cpuPool,
+                        Timer.builder("item.processing.step")
+                                .description("Time of one processing step for a single item")
+                                .tag("step", ClassUtils.getUserClass(processor).getSimpleName())
+                                .tag("kind", processor.kind().name())
+                                .register(meterRegistry)))
+                .toList();
+        this.itemTimer = Timer.builder("item.processing.item")
+                .description("Processing time of a single item")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    //Returns when every item went through every step, the first failure is thrown as is
+    public void apply(List<Item> items) {
+        CompletableFuture<?>[] futures = items.stream()
+                .map(this::applyAsync)
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    //true if a bulk status UPDATE does the same as the chain, see ItemProcessor.coveredByBulkUpdate
+    public boolean isCoveredByBulkUpdate() {
+        return steps.stream().allMatch(step -> step.processor().coveredByBulkUpdate());
+    }
+
+    private CompletableFuture<Void> applyAsync(Item item) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+        for (Step step : steps) {
+            future = future.thenRunAsync(() -> step.timer().record(() -> step.processor().process(item)), step.executor());
+        }
+        return future.whenComplete((v, e) -> itemTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void close() {
+        cpuPool.shutdown();
+        ioExecutor.shutdown();
+    }
+
+    private record Step(ItemProcessor processor, ExecutorService executor, Timer timer) {
+    }
+}
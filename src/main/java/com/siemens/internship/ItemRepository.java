@@ -1,11 +1,90 @@
 package com.siemens.internship;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
     @Query("SELECT id FROM Item")
     List<Long> findAllIds();
+
+    //Reads the next chunk of ids after the given one, only the page size of the pageable is used
+    @Query("SELECT i.id FROM Item i WHERE i.id > :afterId ORDER BY i.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    //Same as findIdsAfter, but only the items that are not PROCESSED yet (uses the status index)
+    @Query("SELECT i.id FROM Item i WHERE i.id > :afterId AND (i.status IS NULL OR i.status <> 'PROCESSED') ORDER BY i.id")
+    List<Long> findUnprocessedIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    //Same as findIdsAfter and findUnprocessedIdsAfter, but not past lastId (one partition of a sharded run)
+    @Query("SELECT i.id FROM Item i WHERE i.id > :afterId AND i.id <= :lastId ORDER BY i.id")
+    List<Long> findIdsBetween(@Param("afterId") Long afterId, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("SELECT i.id FROM Item i WHERE i.id > :afterId AND i.id <= :lastId AND (i.status IS NULL OR i.status <> 'PROCESSED') ORDER BY i.id")
+    List<Long> findUnprocessedIdsBetween(@Param("afterId") Long afterId, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(i.id), 0L) FROM Item i")
+    long findMaxId();
+
+    //Items with the given status in id order, only a page at a time as a status can match most of the table (uses the status index)
+    List<Item> findByStatusOrderById(String status, Pageable pageable);
+
+    //Duplicate check, stops at the first match of the email index instead of scanning the table
+    boolean existsByEmail(String email);
+
+    @Query("SELECT COUNT(i) FROM Item i WHERE i.status IS NULL OR i.status <> 'PROCESSED'")
+    long countUnprocessed();
+
+    //Marks every unprocessed item as PROCESSED with a single statement, returns how many were updated.
+    //Joins the caller's transaction (ItemService changes the table version once it committed), otherwise runs in its own
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Item i SET i.status = 'PROCESSED', i.version = i.version + 1, i.lastModified = instant WHERE i.status IS NULL OR i.status <> 'PROCESSED'")
+    int markAllProcessed();
+
+    //Keyset (seek) page: the cost doesn't grow with the page depth like OFFSET does, status and email are optional filters
+    @Query("SELECT i FROM Item i WHERE i.id > :afterId" +
+            " AND (:status IS NULL OR i.status = :status)" +
+            " AND (:email IS NULL OR i.email = :email)" +
+            " ORDER BY i.id")
+    List<Item> findPageAfter(@Param("afterId") Long afterId,
+                             @Param("status") String status,
+                             @Param("email") String email,
+                             Pageable pageable);
+
+    //Just what a conditional GET needs, without loading the item
+    @Query("SELECT new com.siemens.internship.ItemVersion(i.version, i.lastModified) FROM Item i WHERE i.id = :id")
+    Optional<ItemVersion> findVersionById(@Param("id") Long id);
+
+    //Summary read models, see ItemSummary
+    @Query("SELECT new com.siemens.internship.ItemSummary(i.id, i.name, i.status) FROM Item i ORDER BY i.id")
+    List<ItemSummary> findAllSummaries();
+
+    @Query("SELECT new com.siemens.internship.ItemSummary(i.id, i.name, i.status) FROM Item i WHERE i.id > :afterId" +
+            " AND (:status IS NULL OR i.status = :status)" +
+            " AND (:email IS NULL OR i.email = :email)" +
+            " ORDER BY i.id")
+    List<ItemSummary> findSummaryPageAfter(@Param("afterId") Long afterId,
+                                           @Param("status") String status,
+                                           @Param("email") String email,
+                                           Pageable pageable);
+
+    //Cursor over the whole table, the rows are fetched from the driver in batches and loaded read-only
+    //(no dirty checking snapshots). Must be consumed inside a transaction and closed afterwards.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT i FROM Item i ORDER BY i.id")
+    Stream<Item> streamAll();
 }
@@ -1,32 +1,139 @@
 package com.siemens.internship;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+//Every public method is timed as item.service (tagged with the method name)
+@Timed("item.service")
+@Slf4j
 @Service
 public class ItemService {
 
+    public static final String ITEM_CACHE = "items";
+
     private final ItemRepository itemRepository;
-    private static final ExecutorService executor = Executors.newFixedThreadPool(10);
-    private final Queue<Item> processedItems = new ConcurrentLinkedQueue<>();
+    private final ItemChunkProcessor chunkProcessor;
+    private final ItemProcessorChain processorChain;
+    private final ItemTableVersion tableVersion;
+    private final ItemProcessingProperties properties;
+    private final EntityManager entityManager;
+    private final ItemProcessingExecutor executor;
+    private final Cache itemCache;
+    private final Counter processedCounter;
+    private final Counter skippedCounter;
+    private final Counter failedCounter;
+    //Reads the ids and feeds the pipeline, the chunks themselves run on the processing executor
+    private final ItemProcessingCoordinator coordinator;
+    private final ItemBatchBulkhead bulkhead;
+    //The runs going on, shared with the jobs API
+    private final ItemProcessingRuns runs;
 
     @Autowired
-    public ItemService(ItemRepository itemRepository) {
+    public ItemService(ItemRepository itemRepository, ItemChunkProcessor chunkProcessor, ItemProcessorChain processorChain,
+                       ItemTableVersion tableVersion,
+                       ItemProcessingProperties properties, EntityManager entityManager,
+                       ItemProcessingExecutor executor, CacheManager cacheManager, MeterRegistry meterRegistry,
+                       ItemProcessingCoordinator coordinator, ItemBatchBulkhead bulkhead, ItemProcessingRuns runs) {
         this.itemRepository = itemRepository;
+        this.chunkProcessor = chunkProcessor;
+        this.processorChain = processorChain;
+        this.tableVersion = tableVersion;
+        this.properties = properties;
+        this.entityManager = entityManager;
+        this.executor = executor;
+        this.itemCache = cacheManager.getCache(ITEM_CACHE);
+        this.processedCounter = processingCounter(meterRegistry, "success");
+        this.skippedCounter = processingCounter(meterRegistry, "skipped");
+        this.failedCounter = processingCounter(meterRegistry, "failure");
+        this.coordinator = coordinator;
+        this.bulkhead = bulkhead;
+        this.runs = runs;
+    }
+
+    private static Counter processingCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("item.processing.items")
+                .description("Items handled by the processing job")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
     public List<Item> findAll() {
         return itemRepository.findAll();
     }
 
+    /**
+     * Hands every item to the consumer one by one, without ever holding the whole table in memory.
+     * Every item is detached after the consumer is done with it, so the persistence context stays small.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Item> consumer) {
+        try (Stream<Item> items = itemRepository.streamAll()) {
+            items.forEach(item -> {
+                consumer.accept(item);
+                entityManager.detach(item);
+            });
+        }
+    }
+
+    //Only id, name and status, without loading any entity
+    public List<ItemSummary> findAllSummaries() {
+        return itemRepository.findAllSummaries();
+    }
+
+    /**
+     * Returns up to limit items after the position encoded in the cursor (or from the start if it is null),
+     * optionally filtered by status and email.
+     */
+    public ItemPage<Item> findPage(String cursor, int limit, String status, String email) {
+        //Ask for one more item than needed, so we know if there is a next page without a count query
+        List<Item> items = itemRepository.findPageAfter(decodeCursor(cursor), status, email, PageRequest.of(0, limit + 1));
+        return ItemPage.of(items, limit, Item::getId);
+    }
+
+    //Same as findPage, but with summaries instead of full items
+    public ItemPage<ItemSummary> findSummaryPage(String cursor, int limit, String status, String email) {
+        List<ItemSummary> items = itemRepository.findSummaryPageAfter(decodeCursor(cursor), status, email, PageRequest.of(0, limit + 1));
+        return ItemPage.of(items, limit, ItemSummary::id);
+    }
+
+    static long decodeCursor(String cursor) {
+        //Generated ids start from 1, so 0 is before the first one
+        return cursor == null ? 0L : ItemCursor.decode(cursor);
+    }
+
+    //Missing items are not cached, so random ids can't fill up the cache. The cache hands out copies (see ItemCache)
+    @Cacheable(cacheNames = ITEM_CACHE, key = "#id", condition = "#id != null", unless = "#result == null")
     public Optional<Item> findById(Long id) {
         if (id == null) {
             return Optional.empty();
@@ -34,75 +141,315 @@ public class ItemService {
         return itemRepository.findById(id);
     }
 
+    //For conditional GETs: taken from the cached item if there is one, otherwise read without loading the item
+    public Optional<ItemVersion> findVersion(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Item cached = itemCache.get(id, Item.class);
+        if (cached != null) {
+            return Optional.of(new ItemVersion(cached.getVersion(), cached.getLastModified()));
+        }
+        return itemRepository.findVersionById(id);
+    }
+
+    //One lookup, much cheaper than loading and serializing the list just to find out it didn't change
+    public long findTableVersion() {
+        return tableVersion.current();
+    }
+
+    @Transactional
+    @CachePut(cacheNames = ITEM_CACHE, key = "#result.id", condition = "#item != null")
     public Item save(Item item) {
         if (item == null) {
             return null;
         }
-        return itemRepository.save(item);
+        Item saved = itemRepository.save(item);
+        tableVersion.changed();
+        return saved;
     }
 
+    /**
+     * Updates an existing item. The item is loaded and changed as a managed entity, so there is no extra SELECT
+     * like merging a detached one would do, and only the changed columns are written.
+     * With partial set only the non null fields of changes are applied (PATCH), otherwise all of them (PUT).
+     * If expectedVersion is given it must match the current version, otherwise (or if the item is changed
+     * concurrently) an OptimisticLockingFailureException is thrown.
+     */
+    @Transactional
+    @CachePut(cacheNames = ITEM_CACHE, key = "#id", unless = "#result == null")
+    public Optional<Item> update(Long id, Item changes, Long expectedVersion, boolean partial) {
+        Optional<Item> existing = itemRepository.findById(id);
+        if (existing.isEmpty()) {
+            return Optional.empty();
+        }
+        Item item = existing.get();
+        if (expectedVersion != null && !expectedVersion.equals(item.getVersion())) {
+            throw new OptimisticLockingFailureException("Item " + id + " has version " + item.getVersion()
+                    + ", the update was based on version " + expectedVersion);
+        }
+
+        if (!partial || changes.getName() != null) {
+            item.setName(changes.getName());
+        }
+        if (!partial || changes.getDescription() != null) {
+            item.setDescription(changes.getDescription());
+        }
+        if (!partial || changes.getStatus() != null) {
+            item.setStatus(changes.getStatus());
+        }
+        if (!partial || changes.getEmail() != null) {
+            item.setEmail(changes.getEmail());
+        }
+        //Flush now, so a version conflict is thrown here and never ends up in the cache
+        Item saved = itemRepository.saveAndFlush(item);
+        tableVersion.changed();
+        return Optional.of(saved);
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = ITEM_CACHE, key = "#id")
     public void deleteById(Long id) {
         itemRepository.deleteById(id);
+        tableVersion.changed();
     }
 
     /**
-     * Your Tasks
-     * Identify all concurrency and asynchronous programming issues in the code
-     * Fix the implementation to ensure:
-     * All items are properly processed before the CompletableFuture completes
-     * Thread safety for all shared state
-     * Proper error handling and propagation
-     * Efficient use of system resources
-     * Correct use of Spring's @Async annotation
-     * Add appropriate comments explaining your changes and why they fix the issues
-     * Write a brief explanation of what was wrong with the original implementation
+     * Processes every item and returns the ones that were successfully processed.
      * <p>
-     * Hints
-     * Consider how CompletableFuture composition can help coordinate multiple async operations
-     * Think about appropriate thread-safe collections
-     * Examine how errors are handled and propagated
-     * Consider the interaction between Spring's @Async and CompletableFuture
+     * The ids are read in chunks (keyset on the id, so we never hold the full id list) and every chunk is
+     * handed to the executor as a single task. A task loads its chunk with one findAllById and writes all
+     * status updates in one transaction, instead of one findById + save (and one transaction) per item.
+     * Chunks are only read when there is room in the pipeline (see ItemProcessingPipeline).
+     * The returned future completes only after all chunks are done, or exceptionally if any chunk fails.
      */
     @Async
     public CompletableFuture<List<Item>> processItemsAsync() {
-        //clear previous processed items to avoid duplicates
-        processedItems.clear();
-
-        List<Long> itemIds = itemRepository.findAllIds();
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-        for (Long id : itemIds) {
-            //Create a CompletableFuture for each item processing task
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                try {
-                    //Simulate processing delay
-                    Thread.sleep(100);
-
-                    //Retrieve item from the repo
-                    Item item = itemRepository.findById(id).orElse(null);
-                    if (item == null) {
-                        return;
+        return processItemsAsync(false);
+    }
+
+    /**
+     * With incremental set, only the items that are not PROCESSED yet are read and processed.
+     * Single flight (see ItemProcessingRuns): a call while a run of the same mode is still going on joins that run
+     * instead of starting a second one over the same rows. Every caller gets its own copy of the future, cancelling
+     * it doesn't touch the run or the other callers. The future fails with ItemProcessingConflictException if the
+     * running one is a job of the jobs API.
+     */
+    @Async
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<Item>> processItemsAsync(boolean incremental) {
+        String mode = ItemProcessingRuns.mode(incremental);
+        CompletableFuture<List<Item>> run = new CompletableFuture<>();
+        Object running = runs.register(mode, run);
+        if (running instanceof CompletableFuture<?> future) {
+            return (CompletableFuture<List<Item>>) future.copy();
+        }
+        if (running != null) {
+            return CompletableFuture.failedFuture(new ItemProcessingConflictException(
+                    "A " + mode + " processing job is running: " + ((ItemProcessingJob) running).getId()));
+        }
+        //Not started inside the map operation, the run can complete synchronously and remove itself
+        CompletableFuture<List<Item>> started;
+        try {
+            started = startRun(incremental);
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((items, error) -> {
+            runs.finished(mode, run);
+            if (error == null) {
+                run.complete(items);
+            } else {
+                run.completeExceptionally(error);
+            }
+        });
+        return run.copy();
+    }
+
+    private CompletableFuture<List<Item>> startRun(boolean incremental) {
+        //By id: an item processed again after a conflicting status update (see finishWrites) replaces its first result
+        Map<Long, Item> processed = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+        return runPipeline(new ItemProcessingJob(), null, idSource(incremental), items -> items.forEach(item -> processed.put(item.getId(), item)),
+                (ids, error) -> firstFailure.compareAndSet(null, error))
+                .thenApply(v -> {
+                    if (firstFailure.get() != null) {
+                        throw new CompletionException(firstFailure.get());
                     }
+                    //Chunks finish in any order, the result is in id order like the chunks were read
+                    return processed.values().stream()
+                            .sorted(Comparator.comparing(Item::getId))
+                            .toList();
+                });
+    }
 
-                    //Update item status and save
-                    item.setStatus("PROCESSED");
-                    itemRepository.save(item);
+    /**
+     * Same processing as processItemsAsync, but the progress is reported on the job instead of collecting the items,
+     * and the processed items are recorded as the job's results (see ItemJobResult).
+     * A failed chunk is counted on the job and doesn't stop the others, the future completes when all chunks are done.
+     */
+    public CompletableFuture<Void> processItems(ItemProcessingJob job, boolean incremental) {
+        return runPipeline(job, job.getId(), idSource(incremental), items -> {
+        }, (ids, error) -> {
+        });
+    }
 
-                    //Add to preprocessed items
-                    processedItems.add(item);
+    /**
+     * Same as processItems, but only the items with afterId < id <= lastId (a partition of a sharded run).
+     * keepGoing is asked before every chunk is read, the run stops reading chunks once it returns false.
+     * The future completes with false if any chunk of the range failed.
+     */
+    public CompletableFuture<Boolean> processRange(ItemProcessingJob job, boolean incremental, long afterId, long lastId,
+                                                   BooleanSupplier keepGoing) {
+        IdReader reader = incremental
+                ? (after, chunk) -> itemRepository.findUnprocessedIdsBetween(after, lastId, chunk)
+                : (after, chunk) -> itemRepository.findIdsBetween(after, lastId, chunk);
+        Supplier<List<Long>> ids = idSource(reader, afterId);
+        AtomicBoolean chunkFailed = new AtomicBoolean();
+        return runPipeline(job, job.getId(), () -> keepGoing.getAsBoolean() ? ids.get() : List.of(), items -> {
+        }, (chunkIds, error) -> chunkFailed.set(true))
+                .thenApply(v -> !chunkFailed.get());
+    }
 
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt(); //Restore interupted status
-                    throw new RuntimeException("Item processing interrupted", e);
-                } catch (Exception e) {
-                    throw new RuntimeException("Error processing item with id:" + id, e);
-                }
-            }, executor);
-            futures.add(future);
+    //The highest id in the table, 0 when it is empty
+    public long findMaxId() {
+        return itemRepository.findMaxId();
+    }
+
+    /**
+     * Marks every item that is not PROCESSED yet as PROCESSED with one conditional UPDATE, without running the
+     * ItemProcessor steps. Throws IllegalStateException unless every step is covered by that UPDATE
+     * (see ItemProcessor.coveredByBulkUpdate), the items have to go through a processing run then.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = ITEM_CACHE, allEntries = true)
+    public int markAllProcessed() {
+        if (!processorChain.isCoveredByBulkUpdate()) {
+            throw new IllegalStateException("The processing steps do more than set the status, run the processing instead");
         }
-        // We wait for all tasks to be completed before returning the processed items
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> List.copyOf(processedItems));
+        int updated = itemRepository.markAllProcessed();
+        if (updated > 0) {
+            tableVersion.changed();
+        }
+        processedCounter.increment(updated);
+        return updated;
     }
 
-}
+    //The number of items a run will go through. Callers doing batch work take a batch connection around it
+    public long countItemsToProcess(boolean incremental) {
+        return incremental ? itemRepository.countUnprocessed() : itemRepository.count();
+    }
+
+    //resultsJobId: the job the processed items are recorded for, null to not record them
+    private CompletableFuture<Void> runPipeline(ItemProcessingJob job, String resultsJobId, Supplier<List<Long>> idSource,
+                                                Consumer<List<Item>> sink, BiConsumer<List<Long>, Throwable> onFailure) {
+        int depth = properties.getPipelineDepth() > 0 ? properties.getPipelineDepth() : 2 * executor.getMaxConcurrency();
+        ItemStatusWriteBehind.Outcome writes = new ItemStatusWriteBehind.Outcome();
+        //The id reads (and the lease renewals of a sharded range) hold a batch connection, the chunks take their own
+        ItemProcessingPipeline pipeline = new ItemProcessingPipeline(() -> bulkhead.call(idSource), ids -> executor.supplyAsync(() -> {
+            try {
+                List<Item> processed = processChunkWithRetry(ids, resultsJobId);
+                //With write-behind the chunk isn't written yet, its status updates are queued now that it is final
+                chunkProcessor.queueStatusUpdates(processed, resultsJobId, writes);
+                //The chunk is committed at this point, so the cached copies are stale (evicted again later, see ItemCache)
+                ids.forEach(itemCache::evict);
+                processedCounter.increment(processed.size());
+                //Items deleted after their id was read
+                skippedCounter.increment(ids.size() - processed.size());
+                job.chunkProcessed(ids, processed);
+                return processed;
+            } catch (Exception e) {
+                failedCounter.increment(ids.size());
+                job.chunkFailed(ids);
+                throw new RuntimeException("Error processing items with ids " + ids.get(0) + ".." + ids.get(ids.size() - 1), e);
+            }
+        }), depth);
+        //With write-behind the last status updates may still be queued, the run is only done once they are written
+        return pipeline.run(coordinator::execute, sink, onFailure)
+                .thenRun(() -> finishWrites(job, resultsJobId, writes, sink, onFailure));
+    }
+
+    /*
+     * Waits for the queued status updates of the run (nothing to do without write-behind). An update that found
+     * another version wrote nothing: like a conflicting chunk in processChunkWithRetry, those items are loaded again
+     * with the change and processed once more, up to maxRetries times. The ones still conflicting after that and the
+     * ones of failed batches are failed items of the run.
+     */
+    private void finishWrites(ItemProcessingJob job, String resultsJobId, ItemStatusWriteBehind.Outcome writes,
+                              Consumer<List<Item>> sink, BiConsumer<List<Long>, Throwable> onFailure) {
+        chunkProcessor.flushPending();
+        List<Long> conflicted = writes.takeConflicted();
+        for (int attempt = 1; !conflicted.isEmpty() && attempt <= properties.getMaxRetries(); attempt++) {
+            log.debug("Status of {} items changed while it was queued, retry {}", conflicted.size(), attempt);
+            List<Item> processed;
+            try {
+                processed = chunkProcessor.processChunk(conflicted, resultsJobId);
+            } catch (RuntimeException e) {
+                log.error("Error processing again the {} items whose status update conflicted", conflicted.size(), e);
+                break;
+            }
+            chunkProcessor.queueStatusUpdates(processed, resultsJobId, writes);
+            chunkProcessor.flushPending();
+            sink.accept(processed);
+            conflicted = writes.takeConflicted();
+        }
+        List<Long> failed = new ArrayList<>(writes.takeFailed());
+        failed.addAll(conflicted);
+        if (!failed.isEmpty()) {
+            failedCounter.increment(failed.size());
+            job.writeFailed(failed);
+            onFailure.accept(failed, new IllegalStateException("The status of " + failed.size() + " processed items could not be written"));
+        }
+    }
+
+    private Supplier<List<Long>> idSource(boolean incremental) {
+        //Generated ids start from 1, so 0 is before the first one
+        return idSource(incremental ? itemRepository::findUnprocessedIdsAfter : itemRepository::findIdsAfter, 0L);
+    }
+
+    //Reads the ids chunk by chunk, using the last id seen as the cursor. Returns an empty list at the end
+    private Supplier<List<Long>> idSource(IdReader reader, long startAfterId) {
+        int chunkSize = Math.max(1, properties.getChunkSize());
+        Pageable chunkRequest = PageRequest.of(0, chunkSize);
+        return new Supplier<>() {
+            private long afterId = startAfterId;
+            private boolean exhausted;
 
+            @Override
+            public List<Long> get() {
+                if (exhausted) {
+                    return List.of();
+                }
+                List<Long> chunk = reader.read(afterId, chunkRequest);
+                //A chunk that isn't full is the last one, no need to ask for another
+                exhausted = chunk.size() < chunkSize;
+                if (!chunk.isEmpty()) {
+                    afterId = chunk.get(chunk.size() - 1);
+                }
+                return chunk;
+            }
+        };
+    }
+
+    //One chunk of ids after the given one, see ItemRepository.findIdsAfter
+    private interface IdReader {
+        List<Long> read(Long afterId, Pageable chunk);
+    }
+
+    //A conflict means a user changed one of the items while we processed it: the chunk was rolled back,
+    //so we load it again (with the user's change) and process it once more instead of overwriting the change
+    private List<Item> processChunkWithRetry(List<Long> ids, String resultsJobId) {
+        int attempt = 0;
+        while (true) {
+            try {
+                return chunkProcessor.processChunk(ids, resultsJobId);
+            } catch (OptimisticLockingFailureException e) {
+                if (++attempt > properties.getMaxRetries()) {
+                    throw e;
+                }
+                log.debug("Conflict while processing items {}..{}, retry {}", ids.get(0), ids.get(ids.size() - 1), attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.siemens.internship;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Sharded processing: every instance of the application that runs the same run id takes part in it, and each item
+ * is processed by one of them.
+ * <p>
+ * The items are split into fixed id ranges of item.processing.sharding.partition-size (partition n holds the ids
+ * n * size < id <= (n + 1) * size), so every instance plans the same partitions without talking to the others.
+ * The partitions are rows of item_partition_lease: an instance claims a free one with a conditional UPDATE,
+ * processes its range like a normal run (incremental filters inside the range), renews the lease before every
+ * chunk, marks it done and claims the next one, until none is left. The partition of an instance that went away
+ * is claimed again by another one once its lease expired, its processed items are skipped by an incremental run
+ * (a full run processes them again). A partition with a failed chunk is released instead of marked done, so the
+ * other instances (or the next time this instance takes part in the run) process it again.
+ */
+@Slf4j
+@Service
+public class ItemShardingService {
+
+    //Claimable partitions fetched at once, the first ones are usually taken by the other instances in the meantime
+    private static final int CLAIM_CANDIDATES = 10;
+
+    private final ItemService itemService;
+    private final ItemPartitionLeaseRepository leaseRepository;
+    private final ItemProcessingProperties.Sharding properties;
+    private final ItemBatchBulkhead bulkhead;
+    private final String nodeId;
+
+    @Autowired
+    public ItemShardingService(ItemService itemService, ItemPartitionLeaseRepository leaseRepository,
+                               ItemProcessingProperties properties, ItemBatchBulkhead bulkhead) {
+        this.itemService = itemService;
+        this.leaseRepository = leaseRepository;
+        this.bulkhead = bulkhead;
+        this.properties = properties.getSharding();
+        this.nodeId = this.properties.getNodeId().isBlank() ? UUID.randomUUID().toString() : this.properties.getNodeId();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Takes part in the run with the given id until no partition is left, the claims and lease updates run on the
+     * given executor (the chunks run on the processing executor as usual), each with a batch connection. The partitions
+     * are chained, no thread waits while one is processed. The job counts the items this instance processed.
+     */
+    public CompletableFuture<Void> process(ItemProcessingJob job, String runId, boolean incremental, Executor executor) {
+        //The partitions this instance released in this call, they are left to the others instead of failing here again
+        Set<String> released = ConcurrentHashMap.newKeySet();
+        return CompletableFuture.runAsync(() -> bulkhead.run(() -> planPartitions(runId)), executor)
+                .thenCompose(v -> processNext(job, runId, incremental, released, executor));
+    }
+
+    private CompletableFuture<Void> processNext(ItemProcessingJob job, String runId, boolean incremental, Set<String> released,
+                                                Executor executor) {
+        return CompletableFuture.supplyAsync(() -> bulkhead.call(() -> claimNext(runId, released)), executor)
+                .thenCompose(partition -> partition
+                        .map(claimed -> processPartition(job, claimed, incremental, released, executor)
+                                .thenCompose(v -> processNext(job, runId, incremental, released, executor)))
+                        .orElseGet(() -> CompletableFuture.completedFuture(null)));
+    }
+
+    //Adds the partitions up to the current max id that aren't there yet, the ones added by another instance are skipped
+    void planPartitions(String runId) {
+        long partitionSize = properties.getPartitionSize();
+        //-1 (nothing to plan) for an empty table
+        long lastNeeded = Math.floorDiv(itemService.findMaxId() - 1, partitionSize);
+        for (long partitionNo = leaseRepository.findLastPartitionNo(runId) + 1; partitionNo <= lastNeeded; partitionNo++) {
+            try {
+                leaseRepository.saveAndFlush(new ItemPartitionLease(runId, partitionNo, partitionSize));
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Partition {} of run {} was planned by another instance", partitionNo, runId);
+            }
+        }
+    }
+
+    //The first partition this instance could claim, leaving out the ones in skipped
+    Optional<ItemPartitionLease> claimNext(String runId, Set<String> skipped) {
+        while (true) {
+            Instant now = Instant.now();
+            //Asks for as many more as are skipped, so an empty list after the filter means there is nothing left
+            List<ItemPartitionLease> candidates = leaseRepository.findClaimable(runId, now, PageRequest.of(0, CLAIM_CANDIDATES + skipped.size()))
+                    .stream()
+                    .filter(candidate -> !skipped.contains(candidate.getId()))
+                    .toList();
+            if (candidates.isEmpty()) {
+                return Optional.empty();
+            }
+            for (ItemPartitionLease candidate : candidates) {
+                //Exactly one instance gets 1 back, the others move on to the next candidate
+                if (leaseRepository.claim(candidate.getId(), nodeId, now.plus(properties.getLeaseDuration()), now) == 1) {
+                    if (candidate.getOwner() != null) {
+                        log.info("Took over partition {} from {}, its lease expired", candidate.getId(), candidate.getOwner());
+                    }
+                    return Optional.of(candidate);
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<Void> processPartition(ItemProcessingJob job, ItemPartitionLease partition, boolean incremental,
+                                                     Set<String> released, Executor executor) {
+        String id = partition.getId();
+        //Renewing before each chunk also tells us when the partition was taken over, then we stop reading it
+        return itemService.processRange(job, incremental, partition.getRangeStart(), partition.getRangeEnd(),
+                        () -> leaseRepository.renew(id, nodeId, Instant.now().plus(properties.getLeaseDuration())) == 1)
+                .thenAcceptAsync(allChunksProcessed -> bulkhead.run(() -> {
+                    if (!allChunksProcessed) {
+                        released.add(id);
+                        if (leaseRepository.release(id, nodeId) == 1) {
+                            log.warn("Released partition {}, some of its chunks failed", id);
+                        }
+                    } else if (leaseRepository.complete(id, nodeId) == 0) {
+                        log.warn("Lost the lease of partition {} while processing it", id);
+                    } else {
+                        log.debug("Processed partition {}", id);
+                    }
+                }), executor);
+    }
+}
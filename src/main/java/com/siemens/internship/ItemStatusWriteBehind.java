@@ -0,0 +1,312 @@
+package com.siemens.internship;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind buffer for the status updates of the processing (item.processing.write-behind.enabled).
+ * <p>
+ * The chunks only queue their updates, a background thread writes them as one JDBC batch UPDATE per batchSize
+ * updates, in one transaction, when batchSize updates are waiting or flushInterval after the last write.
+ * Only the status is written (plus the version and last_modified, like any other update), and only if the row still
+ * has the version the item was processed at. An update that finds another version (the item was changed after it was
+ * processed) writes nothing, it is reported on the Outcome of its run, which processes the item again with the change.
+ * <p>
+ * The queue is bounded, a chunk waits when it is full. Updates are at most flushInterval (plus the write) behind,
+ * a processing run flushes before it completes and everything left is written on shutdown. A failed batch is logged,
+ * counted and reported on the Outcome of the runs it belongs to, its items keep their old status.
+ */
+@Slf4j
+public class ItemStatusWriteBehind implements AutoCloseable {
+
+    private static final String UPDATE_STATUS =
+            "UPDATE item SET status = ?, version = version + 1, last_modified = CURRENT_TIMESTAMP WHERE id = ? AND version = ?";
+    //See ItemJobResult, written with the updates of the job's items
+    private static final String INSERT_JOB_RESULT = "INSERT INTO item_job_result (id, job_id, item_id, version) VALUES (?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ItemTableVersion tableVersion;
+    private final ItemBatchBulkhead bulkhead;
+    private final Cache itemCache;
+    private final int batchSize;
+    private final BlockingQueue<StatusUpdate> queue;
+    private final ScheduledExecutorService flusher;
+    //Set while a flush for a full batch is submitted and not started yet, so the chunks don't submit one each
+    private final AtomicBoolean sizeFlushPending = new AtomicBoolean();
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter skippedCounter;
+    private final Counter conflictedCounter;
+    private final Counter failedCounter;
+    //Queueing holds the read lock, close() takes the write lock to set closed, so no update is queued after its drain
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    public ItemStatusWriteBehind(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 ItemTableVersion tableVersion, ItemBatchBulkhead bulkhead, Cache itemCache,
+                                 int capacity, int batchSize, Duration flushInterval, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.tableVersion = tableVersion;
+        this.bulkhead = bulkhead;
+        this.itemCache = itemCache;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("item-write-behind-"));
+        this.flusher.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        Gauge.builder("item.write-behind.depth", queue, BlockingQueue::size)
+                .description("Status updates waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("item.write-behind.flush")
+                .description("Time to write one batch of status updates")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.writtenCounter = updateCounter(meterRegistry, "written");
+        this.skippedCounter = updateCounter(meterRegistry, "skipped");
+        this.conflictedCounter = updateCounter(meterRegistry, "conflicted");
+        this.failedCounter = updateCounter(meterRegistry, "failed");
+    }
+
+    private static Counter updateCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("item.write-behind.updates")
+                .description("Status updates handled by the write-behind buffer")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the current status of the items, waits while the queue is full. Must not be called while holding a
+     * connection, the flusher needs one to make room. The items get the version the write gives them, so the ETags
+     * handed out for them are the ones of the written rows (unless someone changes them before the write).
+     * With a resultsJobId the items are recorded as results of that job in the transaction that writes them.
+     * Updates that are not written (conflicts and failed batches) are reported on the outcome.
+     */
+    public void enqueue(List<Item> items, String resultsJobId, Outcome outcome) {
+        List<StatusUpdate> updates = items.stream().map(item -> new StatusUpdate(item, resultsJobId, outcome)).toList();
+        boolean queued;
+        closeLock.readLock().lock();
+        try {
+            queued = !closed;
+            if (queued) {
+                for (StatusUpdate update : updates) {
+                    if (!queue.offer(update)) {
+                        //Full: a flush must be on its way before we wait for room, the next interval can be far away.
+                        //close() waits for us meanwhile, the flusher keeps running until it has the write lock
+                        requestFlush();
+                        queue.put(update);
+                    }
+                }
+                if (queue.size() >= batchSize) {
+                    requestFlush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing status updates", e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        if (!queued) {
+            //Late chunks during shutdown: nobody flushes anymore, so they are written right away
+            write(updates);
+        }
+        items.forEach(ItemStatusWriteBehind::bumpVersion);
+    }
+
+    private void requestFlush() {
+        if (sizeFlushPending.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    sizeFlushPending.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                //Closed in the meantime, close() writes what is left
+                sizeFlushPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes everything queued so far and returns when it is written (or reported on the outcomes of its runs).
+     * Synchronized, so when it returns the updates taken by a concurrent flush are written too.
+     */
+    public synchronized void flush() {
+        List<StatusUpdate> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        //Waits for the chunks queueing right now, later ones see closed and write their updates themselves
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    //Same as the version + 1 of UPDATE_STATUS
+    private static void bumpVersion(Item item) {
+        if (item.getVersion() != null) {
+            item.setVersion(item.getVersion() + 1);
+        }
+    }
+
+    /*
+     * Doesn't throw, so the scheduled flushes keep going: a failed batch is logged, counted and reported on the
+     * outcomes of its updates, the runs that queued them count them as failed when they finish.
+     */
+    private void write(List<StatusUpdate> batch) {
+        long start = System.nanoTime();
+        try {
+            List<StatusUpdate> notUpdated = bulkhead.call(() -> transactionTemplate.execute(status -> {
+                int[] updated = jdbcTemplate.batchUpdate(UPDATE_STATUS, batch, batch.size(), (statement, update) -> {
+                    statement.setString(1, update.status());
+                    statement.setLong(2, update.id());
+                    statement.setLong(3, update.version());
+                })[0];
+                List<StatusUpdate> written = new ArrayList<>();
+                List<StatusUpdate> missed = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    (updated[i] != 0 ? written : missed).add(batch.get(i));
+                }
+                List<StatusUpdate> results = written.stream().filter(update -> update.resultsJobId() != null).toList();
+                jdbcTemplate.batchUpdate(INSERT_JOB_RESULT, results, results.size(), (statement, update) -> {
+                    statement.setString(1, update.resultsJobId() + "/" + update.id());
+                    statement.setString(2, update.resultsJobId());
+                    statement.setLong(3, update.id());
+                });
+                if (!written.isEmpty()) {
+                    tableVersion.changed();
+                }
+                return missed;
+            }));
+            writtenCounter.increment(batch.size() - notUpdated.size());
+            if (!notUpdated.isEmpty()) {
+                reportNotUpdated(notUpdated);
+            }
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.error("Could not write {} status updates ({}..)", batch.size(), batch.get(0).id(), e);
+            batch.forEach(update -> update.outcome().failed(update.id()));
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            //Cached before the write, or cached from a read in between: either way stale now
+            batch.forEach(update -> itemCache.evict(update.id()));
+        }
+    }
+
+    /*
+     * The rows an update found no match for are loaded again: a deleted item is skipped like a chunk skips it, an
+     * item that has another version was changed after it was processed and goes back to its run to be processed again.
+     */
+    private void reportNotUpdated(List<StatusUpdate> notUpdated) {
+        Set<Long> existing;
+        try {
+            String placeholders = String.join(", ", Collections.nCopies(notUpdated.size(), "?"));
+            existing = new HashSet<>(bulkhead.call(() -> jdbcTemplate.queryForList(
+                    "SELECT id FROM item WHERE id IN (" + placeholders + ")", Long.class,
+                    notUpdated.stream().map(StatusUpdate::id).toArray())));
+        } catch (RuntimeException e) {
+            //Can't tell which were deleted, the runs process them again and skip the deleted ones then
+            log.warn("Could not load {} items whose status update found another version", notUpdated.size(), e);
+            existing = notUpdated.stream().map(StatusUpdate::id).collect(Collectors.toSet());
+        }
+        for (StatusUpdate update : notUpdated) {
+            if (existing.contains(update.id())) {
+                conflictedCounter.increment();
+                update.outcome().conflicted(update.id());
+            } else {
+                skippedCounter.increment();
+            }
+        }
+        log.debug("{} of the status updates found another version", notUpdated.size());
+    }
+
+    /**
+     * The status updates of one processing run that were not written: the conflicted ones (the item was changed
+     * after it was processed, see ItemService) and the ones of failed batches. Collected while the updates are
+     * written, the run takes them once it has flushed.
+     */
+    public static class Outcome {
+
+        private final Queue<Long> conflicted = new ConcurrentLinkedQueue<>();
+        private final Queue<Long> failed = new ConcurrentLinkedQueue<>();
+
+        public List<Long> takeConflicted() {
+            return take(conflicted);
+        }
+
+        public List<Long> takeFailed() {
+            return take(failed);
+        }
+
+        void conflicted(long id) {
+            conflicted.add(id);
+        }
+
+        void failed(long id) {
+            failed.add(id);
+        }
+
+        private static List<Long> take(Queue<Long> ids) {
+            List<Long> taken = new ArrayList<>();
+            for (Long id = ids.poll(); id != null; id = ids.poll()) {
+                taken.add(id);
+            }
+            return taken;
+        }
+    }
+
+    //version: the one the item was processed at, the update writes nothing if the row has another one by then
+    private record StatusUpdate(long id, String status, long version, String resultsJobId, Outcome outcome) {
+
+        StatusUpdate(Item item, String resultsJobId, Outcome outcome) {
+            this(item.getId(), item.getStatus(), item.getVersion(), resultsJobId, outcome);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.siemens.internship;
+
+/**
+ * Lightweight read model for list views. Built directly by the query (constructor expression),
+ * so no entity is created or registered in the persistence context.
+ */
+public record ItemSummary(Long id, String name, String status) {
+}
@@ -0,0 +1,57 @@
+package com.siemens.internship;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A change counter for the whole item table, used as the ETag of the list resources.
+ * It is the sequence item_table_version_seq (created by data.sql). Every transaction that inserts, updates or deletes
+ * items calls changed(), which takes a value of the sequence once the transaction committed. Sequences are not
+ * transactional and take no row lock, so the writers don't wait for each other, and a reader never sees the new
+ * value before the change itself. Reading it is one lookup however large the table is.
+ */
+@Component
+public class ItemTableVersion {
+
+    private static final String NEXT_VALUE = "SELECT NEXT VALUE FOR item_table_version_seq";
+    //The value the next NEXT VALUE will return, seen by every connection (CURRENT VALUE FOR is per session)
+    private static final String CURRENT_VALUE = "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES"
+            + " WHERE SEQUENCE_SCHEMA = 'PUBLIC' AND SEQUENCE_NAME = 'ITEM_TABLE_VERSION_SEQ'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ItemTableVersion(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long current() {
+        return jdbcTemplate.queryForObject(CURRENT_VALUE, Long.class);
+    }
+
+    //Changes the version after the commit of the current transaction (nothing on a rollback), right away without one
+    public void changed() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    advance();
+                }
+            });
+        } else {
+            advance();
+        }
+    }
+
+    private void advance() {
+        jdbcTemplate.queryForObject(NEXT_VALUE, Long.class);
+    }
+
+    //Weak: the same list is sent as JSON, CBOR or Smile and gzipped or not, they are all equivalent
+    public static String eTag(String variant, long version) {
+        return "W/\"" + variant + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,22 @@
+package com.siemens.internship;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "item.transfer")
+public class ItemTransferProperties {
+
+    //Exports every item to this file on startup (.ndjson/.jsonl or .csv)
+    private Path exportPath;
+
+    //Imports the items of this file on startup (.ndjson/.jsonl or .csv)
+    private Path importPath;
+
+    //Continue an import from its checkpoint file instead of starting over
+    private boolean resume = true;
+}
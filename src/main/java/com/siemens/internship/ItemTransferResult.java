@@ -0,0 +1,15 @@
+package com.siemens.internship;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of an export or import run: the rows written or imported, the rows that were rejected
+ * (with the first of them by line number) and how long it took. A resumed import only counts its own run.
+ */
+public record ItemTransferResult(long rows, long failed, List<ItemBatchResult.ItemError> errors, Duration duration) {
+
+    public double rowsPerSecond() {
+        return duration.isZero() ? rows : rows * 1_000_000_000.0 / duration.toNanos();
+    }
+}
@@ -0,0 +1,37 @@
+package com.siemens.internship;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs an export and/or import on startup when item.transfer.export-path / import-path is set, e.g.
+ * --spring.main.web-application-type=none --item.transfer.import-path=items.ndjson
+ * A failure stops the startup, a failed import can then be started again and continues from its checkpoint.
+ */
+@Slf4j
+@Component
+public class ItemTransferRunner implements ApplicationRunner {
+
+    private final ItemTransferService transferService;
+    private final ItemTransferProperties properties;
+
+    @Autowired
+    public ItemTransferRunner(ItemTransferService transferService, ItemTransferProperties properties) {
+        this.transferService = transferService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (properties.getExportPath() != null) {
+            transferService.exportItems(properties.getExportPath());
+        }
+        if (properties.getImportPath() != null) {
+            ItemTransferResult result = transferService.importItems(properties.getImportPath(), properties.isResume());
+            result.errors().forEach(error -> log.warn("Line {} was not imported: {}", error.index(), error.messages()));
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.siemens.internship;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Moves items between the database and NDJSON or CSV files, much faster than going through the REST API item by item.
+ * <p>
+ * The export streams from the repository cursor straight into the file. The import reads the file through its
+ * channel with one reusable buffer, validates and inserts the items in batches of item.batch.size and writes a
+ * checkpoint after every batch, so after a failure it continues after the last committed batch.
+ */
+@Slf4j
+@Service
+public class ItemTransferService {
+
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final long PROGRESS_INTERVAL = 100_000;
+
+    private final ItemService itemService;
+    private final ItemBatchWriter batchWriter;
+    private final ItemBatchProperties batchProperties;
+    private final ObjectMapper objectMapper;
+    private final ItemBatchBulkhead bulkhead;
+
+    @Autowired
+    public ItemTransferService(ItemService itemService, ItemBatchWriter batchWriter, ItemBatchProperties batchProperties,
+                               ObjectMapper objectMapper, ItemBatchBulkhead bulkhead) {
+        this.itemService = itemService;
+        this.batchWriter = batchWriter;
+        this.batchProperties = batchProperties;
+        this.objectMapper = objectMapper;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Writes every item to the file. The items go to file.part first, which replaces the file only once the export
+     * is complete, so a failed export never leaves a half written file behind.
+     */
+    public ItemTransferResult exportItems(Path file) throws IOException {
+        ItemFileFormat format = ItemFileFormat.of(file);
+        Path partFile = file.resolveSibling(file.getFileName() + ".part");
+        long start = System.nanoTime();
+        long[] rows = {0};
+
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+            ItemWriter writer = format == ItemFileFormat.CSV ? csvWriter(out) : ndjsonWriter(out);
+            //Streams on one batch connection for the whole export
+            bulkhead.run(() -> itemService.streamAll(item -> {
+                try {
+                    writer.write(item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++rows[0] % PROGRESS_INTERVAL == 0) {
+                    logProgress("Exported", rows[0], start);
+                }
+            }));
+            //Flushed down to the channel but not closed, closing the writer would close the channel before the force
+            writer.finish();
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partFile);
+            if (e instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            throw e;
+        }
+        Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        ItemTransferResult result = new ItemTransferResult(rows[0], 0, List.of(), Duration.ofNanos(System.nanoTime() - start));
+        log.info("Exported {} items to {} in {} ms ({} rows/s)", result.rows(), file, result.duration().toMillis(),
+                Math.round(result.rowsPerSecond()));
+        return result;
+    }
+
+    /**
+     * Imports the items of the file as new items. Invalid lines are reported by line number and skipped.
+     * With resume set and a checkpoint left by an earlier run, the import continues after the last committed batch.
+     * A batch that was committed right before a crash, but not checkpointed yet, is imported again.
+     */
+    public ItemTransferResult importItems(Path file, boolean resume) throws IOException {
+        ItemFileFormat format = ItemFileFormat.of(file);
+        Path checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        boolean resumed = resume && Files.exists(checkpointFile);
+        Checkpoint checkpoint = resumed ? Checkpoint.read(checkpointFile) : Checkpoint.START;
+        if (resumed) {
+            log.info("Resuming the import of {} at line {}, {} items were imported before", file, checkpoint.line() + 1, checkpoint.imported());
+        }
+
+        long importedBefore = checkpoint.imported();
+        long failedBefore = checkpoint.failed();
+        long start = System.nanoTime();
+        int batchSize = Math.max(1, batchProperties.getSize());
+        List<Item> batch = new ArrayList<>(batchSize);
+        List<Integer> batchLines = new ArrayList<>(batchSize);
+        List<ItemBatchResult.ItemError> errors = new ArrayList<>();
+        ObjectReader itemReader = objectMapper.readerFor(Item.class);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<String> header = null;
+            long position = checkpoint.position();
+            if (format == ItemFileFormat.CSV) {
+                ItemLineReader headerReader = new ItemLineReader(channel, 0, MAX_LINE_LENGTH, true);
+                if (!headerReader.next()) {
+                    throw new IOException("The CSV file " + file + " has no header");
+                }
+                header = Arrays.asList(text(headerReader).trim().split(","));
+                position = Math.max(position, headerReader.endPosition());
+            }
+
+            ItemLineReader lines = new ItemLineReader(channel, position, MAX_LINE_LENGTH, format == ItemFileFormat.CSV);
+            //Line numbers count from the start of the file, including the CSV header
+            int line = (int) checkpoint.line() + (format == ItemFileFormat.CSV && !resumed ? 1 : 0);
+            long nextProgress = checkpoint.imported() + PROGRESS_INTERVAL;
+            while (lines.next()) {
+                line++;
+                if (lines.length() == 0) {
+                    continue;
+                }
+                try {
+                    batch.add(format == ItemFileFormat.CSV
+                            ? ItemCsv.parse(text(lines), header)
+                            : itemReader.readValue(lines.buffer(), lines.start(), lines.length()));
+                    batchLines.add(line);
+                } catch (IOException | IllegalArgumentException e) {
+                    checkpoint = checkpoint.failed(1);
+                    addError(errors, new ItemBatchResult.ItemError(line, List.of("Malformed item: " + e.getMessage())));
+                }
+                if (batch.size() == batchSize) {
+                    checkpoint = insert(batch, batchLines, errors, checkpoint);
+                    checkpoint = checkpoint.at(lines.endPosition(), line);
+                    checkpoint.write(checkpointFile);
+                    if (checkpoint.imported() >= nextProgress) {
+                        logProgress("Imported", checkpoint.imported() - importedBefore, start);
+                        nextProgress += PROGRESS_INTERVAL;
+                    }
+                }
+            }
+            checkpoint = insert(batch, batchLines, errors, checkpoint);
+        }
+        Files.deleteIfExists(checkpointFile);
+
+        ItemTransferResult result = new ItemTransferResult(checkpoint.imported() - importedBefore, checkpoint.failed() - failedBefore,
+                errors, Duration.ofNanos(System.nanoTime() - start));
+        log.info("Imported {} items from {} in {} ms ({} rows/s), {} lines rejected, {} items in total", result.rows(), file,
+                result.duration().toMillis(), Math.round(result.rowsPerSecond()), result.failed(), checkpoint.imported());
+        return result;
+    }
+
+    private Checkpoint insert(List<Item> batch, List<Integer> batchLines, List<ItemBatchResult.ItemError> errors, Checkpoint checkpoint) {
+        if (batch.isEmpty()) {
+            return checkpoint;
+        }
+        ItemBatchResult result = batchWriter.write(batch.iterator());
+        //The writer reports the position in the batch, the user needs the line in the file
+        for (ItemBatchResult.ItemError error : result.errors()) {
+            addError(errors, new ItemBatchResult.ItemError(batchLines.get(error.index()), error.messages()));
+        }
+        batch.clear();
+        batchLines.clear();
+        return checkpoint.imported(result.createdIds().size()).failed(result.errors().size());
+    }
+
+    private static void addError(List<ItemBatchResult.ItemError> errors, ItemBatchResult.ItemError error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    private static String text(ItemLineReader line) {
+        return new String(line.buffer(), line.start(), line.length(), StandardCharsets.UTF_8);
+    }
+
+    private static void logProgress(String action, long rows, long start) {
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        log.info("{} {} items ({} rows/s)", action, rows, Math.round(rows / Math.max(seconds, 0.001)));
+    }
+
+    private ItemWriter ndjsonWriter(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.createGenerator(out);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        return new ItemWriter() {
+            @Override
+            public void write(Item item) throws IOException {
+                generator.writeObject(item);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                generator.writeRaw('\n');
+                generator.flush();
+            }
+        };
+    }
+
+    private static ItemWriter csvWriter(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        ItemCsv.writeHeader(writer);
+        return new ItemWriter() {
+            @Override
+            public void write(Item item) throws IOException {
+                ItemCsv.write(item, writer);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+
+    private interface ItemWriter {
+        void write(Item item) throws IOException;
+
+        //Writes what is still buffered to the stream, without closing it
+        void finish() throws IOException;
+    }
+
+    //Where the import continues: the file position after the last committed batch, its line and the counts so far
+    private record Checkpoint(long position, long line, long imported, long failed) {
+
+        static final Checkpoint START = new Checkpoint(0, 0, 0, 0);
+
+        Checkpoint at(long position, long line) {
+            return new Checkpoint(position, line, imported, failed);
+        }
+
+        Checkpoint imported(long count) {
+            return new Checkpoint(position, line, imported + count, failed);
+        }
+
+        Checkpoint failed(long count) {
+            return new Checkpoint(position, line, imported, failed + count);
+        }
+
+        static Checkpoint read(Path file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            return new Checkpoint(Long.parseLong(properties.getProperty("position")), Long.parseLong(properties.getProperty("line")),
+                    Long.parseLong(properties.getProperty("imported")), Long.parseLong(properties.getProperty("failed")));
+        }
+
+        //Written next to it first and then moved, so a crash never leaves a half written checkpoint
+        void write(Path file) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("position", String.valueOf(position));
+            properties.setProperty("line", String.valueOf(line));
+            properties.setProperty("imported", String.valueOf(imported));
+            properties.setProperty("failed", String.valueOf(failed));
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Item import checkpoint");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
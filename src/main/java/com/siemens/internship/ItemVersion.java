@@ -0,0 +1,7 @@
+package com.siemens.internship;
+
+import java.time.Instant;
+
+//Version and last change of one item, for the ETag and Last-Modified headers
+public record ItemVersion(Long version, Instant lastModified) {
+}
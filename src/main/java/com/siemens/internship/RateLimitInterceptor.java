@@ -0,0 +1,48 @@
+package com.siemens.internship;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Set;
+
+/**
+ * Rejects a request with 429 Too Many Requests (and Retry-After) when its bucket is empty, before the controller
+ * does any work. The requests that start a processing run have their own bucket, so they can't use up the budget
+ * of the CRUD requests. Polling a job and reading its results are ordinary API requests.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    //Method and path of the requests that start a run, matched exactly
+    private static final Set<String> PROCESS_REQUESTS = Set.of(
+            "GET /api/items/process",
+            "POST /api/items/process/jobs",
+            "POST /api/items/process/bulk");
+
+    private final TokenBucket apiBucket;
+    private final TokenBucket processBucket;
+
+    public RateLimitInterceptor(TokenBucket apiBucket, TokenBucket processBucket) {
+        this.apiBucket = apiBucket;
+        this.processBucket = processBucket;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //Only the original request is charged, not the ASYNC dispatch that writes the response of /process or /stream
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        TokenBucket bucket = PROCESS_REQUESTS.contains(request.getMethod() + " " + path) ? processBucket : apiBucket;
+        if (bucket.tryAcquire()) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, bucket.secondsUntilNextToken())));
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.siemens.internship;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "item.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    //Every /api/items request except the process endpoints
+    private Limit api = new Limit(1000, 500);
+
+    //The /api/items/process endpoints, each call can start a run over the whole table
+    private Limit process = new Limit(5, 0.2);
+
+    @Getter
+    @Setter
+    public static class Limit {
+
+        //Max burst
+        private double capacity;
+
+        //Sustained requests per second
+        private double refillPerSecond;
+
+        public Limit() {
+        }
+
+        public Limit(double capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+}
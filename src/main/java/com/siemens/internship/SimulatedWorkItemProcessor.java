@@ -0,0 +1,42 @@
+package com.siemens.internship;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+//Stands in for a call to another system, it waits item.processing.delay-ms for every item
+@Order(100)
+@Component
+public class SimulatedWorkItemProcessor implements ItemProcessor {
+
+    private final ItemProcessingProperties properties;
+
+    @Autowired
+    public SimulatedWorkItemProcessor(ItemProcessingProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void process(Item item) {
+        if (properties.getDelayMs() <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(properties.getDelayMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); //Restore interrupted status
+            throw new RuntimeException("Item processing interrupted", e);
+        }
+    }
+
+    //Without a delay there is nothing to skip
+    @Override
+    public boolean coveredByBulkUpdate() {
+        return properties.getDelayMs() <= 0;
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.IO_BOUND;
+    }
+}
@@ -0,0 +1,24 @@
+package com.siemens.internship;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+//Always the last step: an item is PROCESSED once every other step went through
+@Order(Ordered.LOWEST_PRECEDENCE)
+@Component
+public class StatusItemProcessor implements ItemProcessor {
+
+    public static final String PROCESSED = "PROCESSED";
+
+    @Override
+    public void process(Item item) {
+        item.setStatus(PROCESSED);
+    }
+
+    //The bulk UPDATE sets the same status
+    @Override
+    public boolean coveredByBulkUpdate() {
+        return true;
+    }
+}
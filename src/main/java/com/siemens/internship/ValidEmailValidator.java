@@ -0,0 +1,73 @@
+package com.siemens.internship;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * Checks @ValidEmail with a single scan over the characters, no regex, no backtracking and no allocation.
+ * <p>
+ * Same result as ^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\.[a-zA-Z]{2,6}$ : neither part may contain an '@',
+ * so there is exactly one. The domain can only end with a 2 to 6 letter tld after a '.', and the tld has
+ * no '.' itself, so it is whatever comes after the last '.' of the domain.
+ */
+public class ValidEmailValidator implements ConstraintValidator<ValidEmail, CharSequence> {
+
+    private static final int MIN_TLD_LENGTH = 2;
+    private static final int MAX_TLD_LENGTH = 6;
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || isValidEmail(value);
+    }
+
+    public static boolean isValidEmail(CharSequence email) {
+        int length = email.length();
+        int i = 0;
+        while (i < length && isLocalChar(email.charAt(i))) {
+            i++;
+        }
+        //At least one local character, then the '@'
+        if (i == 0 || i == length || email.charAt(i) != '@') {
+            return false;
+        }
+
+        int domainStart = ++i;
+        int lastDot = -1;
+        for (; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+            } else if (!isLetterOrDigit(c) && c != '-') {
+                return false;
+            }
+        }
+        //At least one domain character before the last '.'
+        if (lastDot <= domainStart) {
+            return false;
+        }
+
+        int tldLength = length - lastDot - 1;
+        if (tldLength < MIN_TLD_LENGTH || tldLength > MAX_TLD_LENGTH) {
+            return false;
+        }
+        for (int j = lastDot + 1; j < length; j++) {
+            if (!isLetter(email.charAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //ASCII only on purpose, Character.isLetter would also accept non ASCII letters the regex rejects
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isLetterOrDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+}
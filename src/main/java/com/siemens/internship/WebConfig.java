@@ -0,0 +1,31 @@
+package com.siemens.internship;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+//Registers its own properties, so it also works in the @WebMvcTest slice that picks it up
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class WebConfig implements WebMvcConfigurer {
+
+    private final RateLimitProperties rateLimit;
+
+    @Autowired
+    public WebConfig(RateLimitProperties rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!rateLimit.isEnabled()) {
+            return;
+        }
+        registry.addInterceptor(new RateLimitInterceptor(
+                        new TokenBucket(rateLimit.getApi().getCapacity(), rateLimit.getApi().getRefillPerSecond()),
+                        new TokenBucket(rateLimit.getProcess().getCapacity(), rateLimit.getProcess().getRefillPerSecond())))
+                .addPathPatterns("/api/items/**", "/api/items");
+    }
+}
@@ -0,0 +1,4 @@
+-- The list ETag counter (see ItemTableVersion). Only created when it is missing, so a restart on a file database keeps
+-- counting. A new one starts at the current time in ms, so it never repeats the ETags of an older one
+CREATE SEQUENCE IF NOT EXISTS item_table_version_seq
+    START WITH DATEDIFF('MILLISECOND', TIMESTAMP '1970-01-01 00:00:00', CURRENT_TIMESTAMP);
@@ -1,5 +1,6 @@
 package com.siemens.internship;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -32,4 +33,17 @@ class InternshipApplicationTests {
 	void itemRepositoryLoads() {
 		assertTrue(applicationContext.containsBean("itemRepository"), "ItemRepository should be loaded");
 	}
+
+	@Test
+	void processingMetricsRegistered() {
+		MeterRegistry meterRegistry = applicationContext.getBean(MeterRegistry.class);
+		assertNotNull(meterRegistry.find("item.processing.executor.active").gauge(), "Executor gauges should be registered");
+		assertFalse(meterRegistry.find("item.processing.items").counters().isEmpty(), "Processing counters should be registered");
+	}
+
+	@Test
+	void processingHasItsOwnCoordinator() {
+		assertTrue(applicationContext.containsBean("itemProcessingCoordinator"), "The runs should be coordinated on their own threads");
+		assertTrue(applicationContext.containsBean("applicationTaskExecutor"), "The coordinator should not replace Spring Boot's task executor");
+	}
 }
@@ -0,0 +1,73 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemBatchBulkheadTests {
+
+    @Test
+    public void testNeverHoldsMoreThanSizePermits() throws Exception {
+        ItemBatchBulkhead bulkhead = new ItemBatchBulkhead(2);
+        AtomicInteger holding = new AtomicInteger();
+        AtomicInteger maxHolding = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(pool.submit(() -> bulkhead.run(() -> {
+                    maxHolding.accumulateAndGet(holding.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    holding.decrementAndGet();
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(2, maxHolding.get());
+        assertEquals(0, bulkhead.getInUse());
+    }
+
+    @Test
+    public void testNestedCallsTakeOnePermit() {
+        ItemBatchBulkhead bulkhead = new ItemBatchBulkhead(1);
+
+        int inUse = bulkhead.call(() -> bulkhead.call(bulkhead::getInUse));
+
+        assertEquals(1, inUse, "The nested call should run with the permit of the outer one instead of waiting");
+        assertEquals(0, bulkhead.getInUse());
+    }
+
+    @Test
+    public void testReleasesThePermitWhenTheWorkFails() {
+        ItemBatchBulkhead bulkhead = new ItemBatchBulkhead(1);
+
+        assertThrows(IllegalStateException.class, () -> bulkhead.run(() -> {
+            throw new IllegalStateException("db down");
+        }));
+
+        assertEquals(0, bulkhead.getInUse());
+        assertEquals("ok", bulkhead.call(() -> "ok"));
+    }
+
+    @Test
+    public void testSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ItemBatchBulkhead(0));
+    }
+}
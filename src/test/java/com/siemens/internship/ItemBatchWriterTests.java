@@ -0,0 +1,133 @@
+package com.siemens.internship;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemBatchWriterTests {
+
+    @Mock
+    private ItemChunkProcessor chunkProcessor;
+
+    private ItemBatchWriter batchWriter;
+
+    @BeforeEach
+    public void setUp() {
+        ItemBatchProperties properties = new ItemBatchProperties();
+        properties.setSize(2);
+        batchWriter = new ItemBatchWriter(chunkProcessor, Validation.buildDefaultValidatorFactory().getValidator(), properties, new ItemBatchBulkhead(2));
+
+        //Hand out ids like the database would
+        AtomicLong ids = new AtomicLong();
+        lenient().when(chunkProcessor.insertChunk(anyList())).thenAnswer(invocation -> {
+            List<Item> items = new ArrayList<>(invocation.getArgument(0));
+            items.forEach(item -> item.setId(ids.incrementAndGet()));
+            return items;
+        });
+    }
+
+    @Test
+    public void testValidItemsAreInsertedInBatches() {
+        ItemBatchResult result = batchWriter.write(Arrays.asList(
+                new Item(null, "Item1", "Description1", "NEW", "item1@example.com"),
+                new Item(null, "Item2", "Description2", "NEW", "item2@example.com"),
+                new Item(null, "Item3", "Description3", "NEW", "item3@example.com")).iterator());
+
+        assertEquals(List.of(1L, 2L, 3L), result.createdIds(), "Every valid item should be created");
+        assertTrue(result.errors().isEmpty(), "There should be no errors");
+        //Batch size is 2: one full batch and the rest
+        verify(chunkProcessor, times(2)).insertChunk(anyList());
+    }
+
+    @Test
+    public void testInvalidItemsAreReportedWithoutFailingTheBatch() {
+        ItemBatchResult result = batchWriter.write(Arrays.asList(
+                new Item(null, "Item1", "Description1", "NEW", "item1@example.com"),
+                new Item(null, "Item2", "Description2", "NEW", "invalid-email"),
+                null,
+                new Item(null, "Item4", "Description4", "NEW", "item4@example.com")).iterator());
+
+        assertEquals(2, result.createdIds().size(), "The valid items should still be created");
+        assertEquals(2, result.errors().size(), "Both invalid items should be reported");
+        assertEquals(1, result.errors().get(0).index());
+        assertEquals(2, result.errors().get(1).index());
+    }
+
+    @Test
+    public void testItemsRejectedByTheDatabaseAreReportedWithoutFailingTheBatch() {
+        Item tooLong = new Item(null, "Item2", "x".repeat(300), "NEW", "item2@example.com");
+        AtomicLong ids = new AtomicLong();
+        when(chunkProcessor.insertChunk(anyList())).thenAnswer(invocation -> {
+            List<Item> items = new ArrayList<>(invocation.getArgument(0));
+            //Ids are assigned before the database rejects the batch, like the sequence does
+            items.forEach(item -> item.setId(ids.incrementAndGet()));
+            if (items.contains(tooLong)) {
+                throw new DataIntegrityViolationException("Value too long for column DESCRIPTION");
+            }
+            return items;
+        });
+
+        ItemBatchResult result = batchWriter.write(Arrays.asList(
+                new Item(null, "Item1", "Description1", "NEW", "item1@example.com"),
+                tooLong,
+                new Item(null, "Item3", "Description3", "NEW", "invalid-email"),
+                new Item(null, "Item4", "Description4", "NEW", "item4@example.com")).iterator());
+
+        assertEquals(2, result.createdIds().size(), "The other items should still be created");
+        assertFalse(result.createdIds().contains(tooLong.getId()));
+        assertEquals(List.of(1, 2), result.errors().stream().map(ItemBatchResult.ItemError::index).toList(),
+                "The rejected item should be reported at its position, in order with the invalid ones");
+        assertTrue(result.errors().get(0).messages().get(0).contains("Value too long"));
+    }
+
+    @Test
+    public void testClientIdsAreIgnored() {
+        Item item = new Item(42L, "Item1", "Description1", "NEW", "item1@example.com");
+
+        ItemBatchResult result = batchWriter.write(List.of(item).iterator());
+
+        assertEquals(List.of(1L), result.createdIds(), "The item should get a generated id");
+    }
+
+    @Test
+    public void testBrokenInputStopsReadingButKeepsCreatedItems() {
+        Iterator<Item> broken = new Iterator<>() {
+            private boolean first = true;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Item next() {
+                if (first) {
+                    first = false;
+                    return new Item(null, "Item1", "Description1", "NEW", "item1@example.com");
+                }
+                throw new NoSuchElementException("Unexpected end of input");
+            }
+        };
+
+        ItemBatchResult result = batchWriter.write(broken);
+
+        assertEquals(List.of(1L), result.createdIds(), "Items read before the error should be created");
+        assertEquals(1, result.errors().size());
+        assertEquals(1, result.errors().get(0).index());
+    }
+}
@@ -0,0 +1,116 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = "item.cache.evict-delay=200ms")
+public class ItemCacheTests {
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @SpyBean
+    private ItemRepository itemRepository;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCache(ItemService.ITEM_CACHE).clear();
+    }
+
+    @Test
+    public void testFindByIdIsServedFromCache() {
+        Item saved = itemService.save(new Item(null, "Cached", "Description", "NEW", "cached@example.com"));
+        cacheManager.getCache(ItemService.ITEM_CACHE).clear();
+        clearInvocations(itemRepository);
+
+        itemService.findById(saved.getId());
+        Optional<Item> cached = itemService.findById(saved.getId());
+
+        assertTrue(cached.isPresent(), "The item should be found");
+        verify(itemRepository, times(1)).findById(saved.getId());
+    }
+
+    @Test
+    public void testSaveUpdatesCache() {
+        Item saved = itemService.save(new Item(null, "Before", "Description", "NEW", "before@example.com"));
+        itemService.findById(saved.getId());
+
+        saved.setName("After");
+        itemService.save(saved);
+        clearInvocations(itemRepository);
+
+        assertEquals("After", itemService.findById(saved.getId()).orElseThrow().getName(), "The cache should hold the saved version");
+        verify(itemRepository, never()).findById(saved.getId());
+    }
+
+    @Test
+    public void testDeleteEvictsFromCache() {
+        Item saved = itemService.save(new Item(null, "Deleted", "Description", "NEW", "deleted@example.com"));
+        itemService.findById(saved.getId());
+
+        itemService.deleteById(saved.getId());
+
+        assertFalse(itemService.findById(saved.getId()).isPresent(), "A deleted item should not be served from the cache");
+    }
+
+    @Test
+    public void testMissingItemsAreNotCached() {
+        itemService.findById(-1L);
+        itemService.findById(-1L);
+
+        verify(itemRepository, times(2)).findById(-1L);
+    }
+
+    @Test
+    public void testCachedItemsAreCopies() {
+        Item saved = itemService.save(new Item(null, "Original", "Description", "NEW", "copy@example.com"));
+        saved.setName("Changed after save");
+        itemService.findById(saved.getId()).orElseThrow().setName("Changed after read");
+
+        assertEquals("Original", itemService.findById(saved.getId()).orElseThrow().getName(),
+                "Changing an item handed out by the cache should not change the cached one");
+    }
+
+    @Test
+    public void testOlderVersionDoesNotReplaceCachedItem() {
+        Cache cache = cacheManager.getCache(ItemService.ITEM_CACHE);
+        Item older = new Item(1L, "Older", "Description", "NEW", "older@example.com");
+        older.setVersion(1L);
+        Item newer = new Item(1L, "Newer", "Description", "NEW", "newer@example.com");
+        newer.setVersion(2L);
+
+        cache.put(1L, newer);
+        cache.put(1L, older);
+
+        assertEquals("Newer", cache.get(1L, Item.class).getName());
+    }
+
+    @Test
+    public void testEvictIsRepeatedAfterTheDelay() throws InterruptedException {
+        Cache cache = cacheManager.getCache(ItemService.ITEM_CACHE);
+        Item stale = new Item(1L, "Stale", "Description", "NEW", "stale@example.com");
+
+        cache.evict(1L);
+        //A read that loaded the row before the write committed puts it after the evict
+        cache.put(1L, stale);
+        assertNotNull(cache.get(1L));
+
+        for (int attempt = 0; attempt < 50 && cache.get(1L) != null; attempt++) {
+            Thread.sleep(100);
+        }
+        assertNull(cache.get(1L), "The stale item should be evicted again after the delay");
+    }
+}
@@ -0,0 +1,153 @@
+package com.siemens.internship;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemChunkProcessorTests {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private ItemJobResultRepository jobResultRepository;
+
+    @Mock
+    private ItemTableVersion tableVersion;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ItemProcessorChain processorChain;
+    private ItemChunkProcessor chunkProcessor;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        processorChain = new ItemProcessorChain(List.of(new StatusItemProcessor()), new ForkJoinPool(2),
+                Executors.newFixedThreadPool(2), meterRegistry);
+        chunkProcessor = new ItemChunkProcessor(itemRepository, jobResultRepository, tableVersion, processorChain, new TransactionTemplate(transactionManager), new ItemBatchBulkhead(2), Optional.empty());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        processorChain.close();
+    }
+
+    @Test
+    public void testProcessChunkLoadsAndSavesOncePerStage() {
+        when(itemRepository.findAllById(List.of(1L, 2L))).thenAnswer(invocation -> List.of(
+                new Item(1L, "Item1", "Description1", "NEW", "item1@example.com"),
+                new Item(2L, "Item2", "Description2", "NEW", "item2@example.com")));
+        when(itemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Item> result = chunkProcessor.processChunk(List.of(1L, 2L), null);
+
+        assertEquals(2, result.size(), "Should return every item of the chunk");
+        assertTrue(result.stream().allMatch(item -> "PROCESSED".equals(item.getStatus())));
+        //Once to process the items, once more in the write transaction to copy the changes onto the managed entities
+        verify(itemRepository, times(2)).findAllById(List.of(1L, 2L));
+        verify(itemRepository, times(1)).saveAll(anyList());
+        verify(itemRepository, never()).findById(anyLong());
+        verify(tableVersion).changed();
+        verify(jobResultRepository, never()).saveAll(anyList());
+        assertEquals(2, meterRegistry.get("item.processing.item").timer().count(), "Every item should be timed");
+    }
+
+    @Test
+    public void testProcessChunkRecordsResultsOfTheJob() {
+        Item item1 = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        when(itemRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(item1));
+        when(itemRepository.findAllById(List.of(1L))).thenReturn(List.of(item1));
+        when(itemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        chunkProcessor.processChunk(List.of(1L, 2L), "job1");
+
+        ArgumentCaptor<List<ItemJobResult>> results = ArgumentCaptor.forClass(List.class);
+        verify(jobResultRepository).saveAll(results.capture());
+        assertEquals(List.of("job1/1"), results.getValue().stream().map(ItemJobResult::getId).toList(),
+                "Only the written items should be recorded");
+    }
+
+    @Test
+    public void testProcessChunkSkipsMissingItems() {
+        Item item1 = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        when(itemRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(item1));
+        when(itemRepository.findAllById(List.of(1L))).thenReturn(List.of(item1));
+        when(itemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Item> result = chunkProcessor.processChunk(List.of(1L, 2L), null);
+
+        assertEquals(List.of(item1), result, "Missing items should be skipped");
+    }
+
+    @Test
+    public void testProcessingRunsOutsideTheWriteTransaction() {
+        Item loaded = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        when(itemRepository.findAllById(List.of(1L))).thenReturn(List.of(loaded), List.of(new Item(1L, "Item1", "Description1", "NEW", "item1@example.com")));
+        when(itemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            assertEquals("PROCESSED", loaded.getStatus(), "The items should be processed before the transaction starts");
+            return null;
+        });
+
+        chunkProcessor.processChunk(List.of(1L), null);
+
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void testItemChangedWhileProcessedFailsTheChunk() {
+        Item changedByUser = new Item(1L, "Renamed", "Description1", "NEW", "item1@example.com");
+        changedByUser.setVersion(1L);
+        Item loaded = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        loaded.setVersion(0L);
+        when(itemRepository.findAllById(List.of(1L))).thenReturn(List.of(loaded), List.of(changedByUser));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> chunkProcessor.processChunk(List.of(1L), null));
+        assertEquals("Renamed", changedByUser.getName(), "The user's change should not be overwritten");
+        verify(itemRepository, never()).saveAll(anyList());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    public void testProcessChunkQueuesStatusWithWriteBehind() {
+        ItemStatusWriteBehind writeBehind = mock(ItemStatusWriteBehind.class);
+        chunkProcessor = new ItemChunkProcessor(itemRepository, jobResultRepository, tableVersion, processorChain, new TransactionTemplate(transactionManager), new ItemBatchBulkhead(2), Optional.of(writeBehind));
+        Item item1 = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        when(itemRepository.findAllById(List.of(1L))).thenReturn(List.of(item1));
+
+        ItemStatusWriteBehind.Outcome outcome = new ItemStatusWriteBehind.Outcome();
+
+        List<Item> result = chunkProcessor.processChunk(List.of(1L), null);
+        verify(writeBehind, never()).enqueue(anyList(), any(), any());
+        chunkProcessor.queueStatusUpdates(result, null, outcome);
+        chunkProcessor.flushPending();
+
+        assertEquals("PROCESSED", result.get(0).getStatus());
+        verify(transactionManager, never()).getTransaction(any());
+        verify(writeBehind).enqueue(List.of(item1), null, outcome);
+        verify(writeBehind).flush();
+        verify(itemRepository, never()).saveAll(anyList());
+        verify(tableVersion, never()).changed();
+    }
+}
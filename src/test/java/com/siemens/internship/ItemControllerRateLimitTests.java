@@ -0,0 +1,54 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+//The controller with the rate limit turned on, a single process call per bucket
+@WebMvcTest(value = ItemController.class, properties = {
+        "item.rate-limit.process.capacity=1",
+        "item.rate-limit.process.refill-per-second=0.001"
+})
+public class ItemControllerRateLimitTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ItemService itemService;
+
+    @MockBean
+    private ItemBatchWriter itemBatchWriter;
+
+    @MockBean
+    private ItemProcessingJobService jobService;
+
+    @Test
+    public void testAsyncProcessCallIsChargedOnce() throws Exception {
+        Item item = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        when(itemService.processItemsAsync(false)).thenReturn(CompletableFuture.completedFuture(List.of(item)));
+
+        MvcResult result = mockMvc.perform(get("/api/items/process"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //The ASYNC dispatch that writes the result must not take a second token
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1));
+
+        mockMvc.perform(get("/api/items/process"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+}
@@ -1,23 +1,32 @@
 package com.siemens.internship;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(ItemController.class)
+//The rate limit has its own tests, here it would reject the process calls after the burst
+@WebMvcTest(value = ItemController.class, properties = "item.rate-limit.enabled=false")
 public class ItemControllerTests {
 
     @Autowired
@@ -26,11 +35,18 @@ public class ItemControllerTests {
     @MockBean
     private ItemService itemService;
 
+    @MockBean
+    private ItemBatchWriter itemBatchWriter;
+
+    @MockBean
+    private ItemProcessingJobService jobService;
+
     private ObjectMapper objectMapper;
 
     @BeforeEach
     public void setUp() {
         objectMapper = new ObjectMapper();
+        when(itemService.findTableVersion()).thenReturn(7L);
     }
 
     @Test
@@ -47,6 +63,113 @@ public class ItemControllerTests {
                 .andExpect(jsonPath("$[1].name").value("Item2"));
     }
 
+    @Test
+    public void testGetAllItemsAsCbor() throws Exception {
+        List<Item> items = List.of(new Item(1L, "Item1", "Description1", "NEW", "item1@example.com"));
+        when(itemService.findAll()).thenReturn(items);
+
+        MvcResult result = mockMvc.perform(get("/api/items").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn();
+
+        Item[] decoded = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), Item[].class);
+        assertEquals("Item1", decoded[0].getName());
+    }
+
+    @Test
+    public void testGetAllItemsSummaryFields() throws Exception {
+        when(itemService.findAllSummaries()).thenReturn(List.of(new ItemSummary(1L, "Item1", "NEW")));
+
+        mockMvc.perform(get("/api/items").param("fields", "id,name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Item1"))
+                .andExpect(jsonPath("$[0].email").doesNotExist());
+        verify(itemService, never()).findAll();
+    }
+
+    @Test
+    public void testGetAllItemsWithFieldsOutsideSummary() throws Exception {
+        mockMvc.perform(get("/api/items").param("fields", "id,email"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/items").param("limit", "5").param("fields", "id,email"))
+                .andExpect(status().isBadRequest());
+        verify(itemService, never()).findAll();
+        verify(itemService, never()).findAllSummaries();
+        verify(itemService, never()).findPage(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    public void testGetItemsPageWithSummaryFields() throws Exception {
+        when(itemService.findSummaryPage(null, 5, null, null))
+                .thenReturn(new ItemPage<>(List.of(new ItemSummary(1L, "Item1", "NEW")), null));
+
+        mockMvc.perform(get("/api/items").param("limit", "5").param("fields", "id,name,status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].status").value("NEW"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void testGetItemsPage() throws Exception {
+        Item item = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        when(itemService.findPage(null, 1, "NEW", null)).thenReturn(new ItemPage<>(List.of(item), ItemCursor.encode(1L)));
+
+        mockMvc.perform(get("/api/items").param("limit", "1").param("status", "NEW"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Item1"))
+                .andExpect(jsonPath("$.nextCursor").value(ItemCursor.encode(1L)));
+    }
+
+    @Test
+    public void testGetItemsPageWithInvalidLimit() throws Exception {
+        mockMvc.perform(get("/api/items").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        verify(itemService, never()).findPage(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    public void testGetItemsPageWithInvalidCursor() throws Exception {
+        when(itemService.findPage("garbage", 10, null, null)).thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/items").param("limit", "10").param("after", "garbage"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStreamAllItemsAsJsonArray() throws Exception {
+        stubStreamAll(new Item(1L, "Item1", "Description1", "NEW", "item1@example.com"),
+                new Item(2L, "Item2", "Description2", "NEW", "item2@example.com"));
+
+        MvcResult result = mockMvc.perform(get("/api/items/stream").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Item1"))
+                .andExpect(jsonPath("$[1].name").value("Item2"));
+        verify(itemService, never()).findAll();
+    }
+
+    @Test
+    public void testStreamAllItemsAsNdjson() throws Exception {
+        stubStreamAll(new Item(1L, "Item1", "Description1", "NEW", "item1@example.com"),
+                new Item(2L, "Item2", "Description2", "NEW", "item2@example.com"));
+
+        MvcResult result = mockMvc.perform(get("/api/items/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.trim().split("\n");
+        assertEquals(2, lines.length, "Should write one line per item");
+        assertEquals("Item1", objectMapper.readValue(lines[0], Item.class).getName());
+        assertEquals("Item2", objectMapper.readValue(lines[1], Item.class).getName());
+    }
+
     @Test
     public void testGetItemById() throws Exception {
         Item item = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
@@ -91,6 +214,139 @@ public class ItemControllerTests {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void testCreateItemsFromJsonArray() throws Exception {
+        List<Item> received = stubBatchWriter(new ItemBatchResult(List.of(1L, 2L), List.of()));
+        List<Item> items = List.of(
+                new Item(null, "Item1", "Description1", "NEW", "item1@example.com"),
+                new Item(null, "Item2", "Description2", "NEW", "item2@example.com"));
+
+        mockMvc.perform(post("/api/items/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(items)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.createdIds[0]").value(1L))
+                .andExpect(jsonPath("$.createdIds[1]").value(2L));
+        assertEquals(2, received.size(), "Every item of the array should be passed on");
+    }
+
+    @Test
+    public void testCreateItemsFromNdjsonWithErrors() throws Exception {
+        List<Item> received = stubBatchWriter(new ItemBatchResult(List.of(1L),
+                List.of(new ItemBatchResult.ItemError(1, List.of("Invalid format for the emailz")))));
+        String body = objectMapper.writeValueAsString(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"))
+                + "\n" + objectMapper.writeValueAsString(new Item(null, "Item2", "Description2", "NEW", "invalid-email")) + "\n";
+
+        mockMvc.perform(post("/api/items/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[0].messages[0]").value("Invalid format for the emailz"));
+        assertEquals(2, received.size(), "Every line should be passed on");
+    }
+
+    @Test
+    public void testProcessItemsRespondsAsynchronously() throws Exception {
+        CompletableFuture<List<Item>> run = new CompletableFuture<>();
+        when(itemService.processItemsAsync(false)).thenReturn(run);
+
+        MvcResult result = mockMvc.perform(get("/api/items/process"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        run.complete(List.of(new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com")));
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].status").value("PROCESSED"));
+    }
+
+    @Test
+    public void testProcessItemsConflictsWithARunningJob() throws Exception {
+        when(itemService.processItemsAsync(false))
+                .thenReturn(CompletableFuture.failedFuture(new ItemProcessingConflictException("A full processing job is running")));
+
+        MvcResult result = mockMvc.perform(get("/api/items/process"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testStartProcessingJob() throws Exception {
+        ItemProcessingJob job = new ItemProcessingJob();
+        when(jobService.start(false)).thenReturn(job);
+
+        mockMvc.perform(post("/api/items/process/jobs"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/items/process/jobs/" + job.getId()))
+                .andExpect(jsonPath("$.id").value(job.getId()))
+                .andExpect(jsonPath("$.state").value("RUNNING"));
+    }
+
+    @Test
+    public void testStartProcessingJobConflictsWithARunningProcessRun() throws Exception {
+        when(jobService.start(false)).thenThrow(new ItemProcessingConflictException("A full processing run is going on"));
+
+        mockMvc.perform(post("/api/items/process/jobs"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testStartShardedProcessingJob() throws Exception {
+        ItemProcessingJob job = new ItemProcessingJob();
+        when(jobService.startSharded("nightly", true)).thenReturn(job);
+
+        mockMvc.perform(post("/api/items/process/jobs").param("incremental", "true").param("run", "nightly"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").value(job.getId()));
+        verify(jobService, never()).start(anyBoolean());
+    }
+
+    @Test
+    public void testMarkAllProcessed() throws Exception {
+        when(itemService.markAllProcessed()).thenReturn(3);
+
+        mockMvc.perform(post("/api/items/process/bulk"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(3));
+    }
+
+    @Test
+    public void testMarkAllProcessedRefused() throws Exception {
+        when(itemService.markAllProcessed()).thenThrow(new IllegalStateException("steps would be skipped"));
+
+        mockMvc.perform(post("/api/items/process/bulk"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testGetProcessingJobNotFound() throws Exception {
+        when(jobService.find("unknown")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/items/process/jobs/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetProcessingJobResults() throws Exception {
+        when(jobService.findResults("job", "cursor", 10)).thenReturn(Optional.of(
+                new ItemPage<>(List.of(new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com")), "next")));
+        when(jobService.findResults("job", "bad", 10)).thenThrow(new IllegalArgumentException("Invalid cursor: bad"));
+
+        mockMvc.perform(get("/api/items/process/jobs/job/results").param("after", "cursor").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].status").value("PROCESSED"))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+        mockMvc.perform(get("/api/items/process/jobs/job/results").param("after", "bad").param("limit", "10"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/items/process/jobs/job/results").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testDeleteItem() throws Exception {
         when(itemService.findById(1L)).thenReturn(Optional.of(new Item(1L, "Test Item", "Test Description", "NEW", "test@example.com")));
@@ -110,11 +366,9 @@ public class ItemControllerTests {
 
     @Test
     public void testUpdateItem() throws Exception {
-        Item existingItem = new Item(1L, "Old Item", "Old Description", "NEW", "old@example.com");
         Item updatedItem = new Item(1L, "Updated Item", "Updated Description", "PROCESSED", "updated@example.com");
 
-        when(itemService.findById(1L)).thenReturn(Optional.of(existingItem));
-        when(itemService.save(any(Item.class))).thenReturn(updatedItem);
+        when(itemService.update(eq(1L), any(Item.class), isNull(), eq(false))).thenReturn(Optional.of(updatedItem));
 
         mockMvc.perform(put("/api/items/1")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -128,7 +382,7 @@ public class ItemControllerTests {
     public void testUpdateItemNotFound() throws Exception {
         Item updatedItem = new Item(999L, "Nonexistent Item", "Description", "PROCESSED", "updated@example.com");
 
-        when(itemService.findById(999L)).thenReturn(Optional.empty());
+        when(itemService.update(eq(999L), any(Item.class), isNull(), eq(false))).thenReturn(Optional.empty());
 
         mockMvc.perform(put("/api/items/999")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -136,4 +390,191 @@ public class ItemControllerTests {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void testUpdateItemWithMatchingIfMatch() throws Exception {
+        Item updatedItem = new Item(1L, "Updated Item", "Updated Description", "NEW", "updated@example.com");
+        updatedItem.setVersion(4L);
+
+        when(itemService.update(eq(1L), any(Item.class), eq(3L), eq(false))).thenReturn(Optional.of(updatedItem));
+
+        mockMvc.perform(put("/api/items/1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedItem)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"4\""));
+    }
+
+    @Test
+    public void testUpdateItemWithStaleIfMatch() throws Exception {
+        Item item = new Item(1L, "Updated Item", "Updated Description", "NEW", "updated@example.com");
+
+        when(itemService.update(eq(1L), any(Item.class), eq(2L), eq(false)))
+                .thenThrow(new OptimisticLockingFailureException("stale"));
+
+        mockMvc.perform(put("/api/items/1")
+                        .header("If-Match", "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(item)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void testUpdateItemWithInvalidIfMatch() throws Exception {
+        Item item = new Item(1L, "Updated Item", "Updated Description", "NEW", "updated@example.com");
+
+        mockMvc.perform(put("/api/items/1")
+                        .header("If-Match", "not-an-etag")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(item)))
+                .andExpect(status().isPreconditionFailed());
+        verify(itemService, never()).update(anyLong(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void testUpdateItemWithWeakIfMatch() throws Exception {
+        Item item = new Item(1L, "Updated Item", "Updated Description", "NEW", "updated@example.com");
+
+        //If-Match compares strongly, a weak ETag never matches
+        mockMvc.perform(put("/api/items/1")
+                        .header("If-Match", "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(item)))
+                .andExpect(status().isPreconditionFailed());
+        verify(itemService, never()).update(anyLong(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void testUpdateItemConcurrentConflict() throws Exception {
+        Item item = new Item(1L, "Updated Item", "Updated Description", "NEW", "updated@example.com");
+
+        when(itemService.update(eq(1L), any(Item.class), isNull(), eq(false)))
+                .thenThrow(new OptimisticLockingFailureException("concurrent update"));
+
+        mockMvc.perform(put("/api/items/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(item)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testPatchItem() throws Exception {
+        Item patched = new Item(1L, "Item1", "Description1", "DONE", "item1@example.com");
+
+        when(itemService.update(eq(1L), any(Item.class), isNull(), eq(true))).thenReturn(Optional.of(patched));
+
+        mockMvc.perform(patch("/api/items/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"DONE\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("DONE"));
+    }
+
+    @Test
+    public void testGetItemByIdReturnsETag() throws Exception {
+        Item item = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        item.setVersion(7L);
+
+        when(itemService.findById(1L)).thenReturn(Optional.of(item));
+
+        mockMvc.perform(get("/api/items/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"7\""));
+    }
+
+    @Test
+    public void testGetItemByIdNotModified() throws Exception {
+        when(itemService.findVersion(1L)).thenReturn(Optional.of(new ItemVersion(7L, null)));
+
+        mockMvc.perform(get("/api/items/1").header("If-None-Match", "W/\"7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "W/\"7\""))
+                .andExpect(content().string(""));
+        //If-None-Match compares weakly
+        mockMvc.perform(get("/api/items/1").header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified());
+
+        //Answered from the version alone
+        verify(itemService, never()).findById(anyLong());
+    }
+
+    @Test
+    public void testGetItemByIdModifiedSinceETag() throws Exception {
+        Item item = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        item.setVersion(8L);
+        item.setLastModified(Instant.parse("2025-01-01T10:00:00Z"));
+        when(itemService.findVersion(1L)).thenReturn(Optional.of(new ItemVersion(8L, item.getLastModified())));
+        when(itemService.findById(1L)).thenReturn(Optional.of(item));
+
+        mockMvc.perform(get("/api/items/1").header("If-None-Match", "W/\"7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"8\""))
+                .andExpect(header().string("Last-Modified", "Wed, 01 Jan 2025 10:00:00 GMT"))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(jsonPath("$.name").value("Item1"));
+    }
+
+    @Test
+    public void testGetItemByIdNotModifiedSince() throws Exception {
+        when(itemService.findVersion(1L)).thenReturn(Optional.of(new ItemVersion(7L, Instant.parse("2025-01-01T10:00:00Z"))));
+
+        mockMvc.perform(get("/api/items/1").header("If-Modified-Since", "Wed, 01 Jan 2025 10:00:00 GMT"))
+                .andExpect(status().isNotModified());
+
+        verify(itemService, never()).findById(anyLong());
+    }
+
+    @Test
+    public void testGetAllItemsNotModified() throws Exception {
+        String eTag = ItemTableVersion.eTag("items", 7);
+
+        mockMvc.perform(get("/api/items").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        verify(itemService, never()).findAll();
+    }
+
+    @Test
+    public void testGetAllItemsETagChangesWithTheTable() throws Exception {
+        String oldETag = ItemTableVersion.eTag("items", 7);
+        when(itemService.findTableVersion()).thenReturn(8L);
+        when(itemService.findAll()).thenReturn(List.of(new Item(1L, "Item1", "Description1", "NEW", "item1@example.com")));
+
+        mockMvc.perform(get("/api/items").header("If-None-Match", oldETag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", ItemTableVersion.eTag("items", 8)))
+                .andExpect(jsonPath("$[0].name").value("Item1"));
+    }
+
+    @Test
+    public void testSummaryListHasItsOwnETag() throws Exception {
+        String itemsETag = ItemTableVersion.eTag("items", 7);
+        when(itemService.findAllSummaries()).thenReturn(List.of(new ItemSummary(1L, "Item1", "NEW")));
+
+        //The same table version, but the summaries are another representation than the full items
+        mockMvc.perform(get("/api/items").param("fields", "id,name").header("If-None-Match", itemsETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Item1"));
+    }
+
+    private void stubStreamAll(Item... items) {
+        doAnswer(invocation -> {
+            Consumer<Item> consumer = invocation.getArgument(0);
+            for (Item item : items) {
+                consumer.accept(item);
+            }
+            return null;
+        }).when(itemService).streamAll(any());
+    }
+
+    //Drains the items the controller parsed into the returned list and answers with the given result
+    private List<Item> stubBatchWriter(ItemBatchResult result) {
+        List<Item> received = new ArrayList<>();
+        when(itemBatchWriter.write(any())).thenAnswer(invocation -> {
+            Iterator<Item> items = invocation.getArgument(0);
+            items.forEachRemaining(received::add);
+            return result;
+        });
+        return received;
+    }
 }
@@ -0,0 +1,40 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemFileStorageTests {
+
+    @TempDir
+    Path directory;
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(InternshipApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("file")
+                .run("--item.db.path=" + directory.resolve("items"), "--item.processing.delay-ms=0");
+    }
+
+    @Test
+    public void testItemsSurviveARestart() {
+        Long id;
+        try (ConfigurableApplicationContext context = start()) {
+            id = context.getBean(ItemRepository.class)
+                    .save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"))
+                    .getId();
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            Item item = context.getBean(ItemRepository.class).findById(id).orElseThrow();
+            assertEquals("Item1", item.getName(), "The item should still be there after the restart");
+        }
+        assertTrue(directory.resolve("items.mv.db").toFile().exists(), "The data should be in the file database");
+    }
+}
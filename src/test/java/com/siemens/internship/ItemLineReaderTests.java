@@ -0,0 +1,71 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemLineReaderTests {
+
+    @TempDir
+    Path directory;
+
+    private List<String> readAll(String content, long position, int maxLineLength, boolean quoteAware) throws IOException {
+        Path file = directory.resolve("lines.txt");
+        Files.writeString(file, content);
+        List<String> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ItemLineReader reader = new ItemLineReader(channel, position, maxLineLength, quoteAware);
+            while (reader.next()) {
+                lines.add(new String(reader.buffer(), reader.start(), reader.length(), StandardCharsets.UTF_8));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testLinesAcrossBufferRefills() throws IOException {
+        //A buffer of 8 bytes has to be refilled and compacted many times
+        assertEquals(List.of("first", "second", "", "thirdé", "last"),
+                readAll("first\nsecond\r\n\nthirdé\nlast", 0, 8, false));
+    }
+
+    @Test
+    public void testStartsAtPosition() throws IOException {
+        assertEquals(List.of("second"), readAll("first\nsecond\n", 6, 64, false));
+    }
+
+    @Test
+    public void testLineBreakInQuotesBelongsToTheLine() throws IOException {
+        assertEquals(List.of("1,\"a\nb\"", "2,c"), readAll("1,\"a\nb\"\n2,c\n", 0, 64, true));
+        assertEquals(List.of("1,\"a", "b\"", "2,c"), readAll("1,\"a\nb\"\n2,c\n", 0, 64, false));
+    }
+
+    @Test
+    public void testEndPosition() throws IOException {
+        Path file = directory.resolve("lines.txt");
+        Files.writeString(file, "ab\ncd\n");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ItemLineReader reader = new ItemLineReader(channel, 0, 4, false);
+            assertTrue(reader.next());
+            assertEquals(3, reader.endPosition());
+            assertTrue(reader.next());
+            assertEquals(6, reader.endPosition());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testTooLongLine() {
+        assertThrows(IOException.class, () -> readAll("a".repeat(100) + "\n", 0, 16, false));
+    }
+}
@@ -0,0 +1,77 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemProcessingExecutorTests {
+
+    private ItemProcessingExecutor executor;
+
+    @BeforeEach
+    public void setUp() {
+        //More threads than permits, so only the limiter can keep the concurrency at 2
+        executor = new ItemProcessingExecutor(Executors.newFixedThreadPool(8), 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void testNeverRunsMoreThanMaxConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            int value = i;
+            futures.add(executor.supplyAsync(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return value;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertTrue(maxRunning.get() <= 2, "At most 2 tasks should run at once, saw " + maxRunning.get());
+        assertEquals(0, executor.getActiveCount(), "All permits should be released");
+        assertEquals(0, executor.getQueuedCount(), "Nothing should be left waiting");
+    }
+
+    @Test
+    public void testFailureIsPropagatedAndPermitReleased() {
+        CompletableFuture<Object> future = executor.supplyAsync(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        Exception exception = assertThrows(Exception.class, future::join);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals(0, executor.getActiveCount(), "The permit should be released after a failure");
+    }
+
+    @Test
+    public void testRejectsInvalidConcurrency() {
+        ExecutorService delegate = Executors.newSingleThreadExecutor();
+        try {
+            assertThrows(IllegalArgumentException.class, () -> new ItemProcessingExecutor(delegate, 0));
+        } finally {
+            delegate.shutdown();
+        }
+    }
+}
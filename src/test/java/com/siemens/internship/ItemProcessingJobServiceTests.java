@@ -0,0 +1,165 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemProcessingJobServiceTests {
+
+    @Mock
+    private ItemService itemService;
+
+    @Mock
+    private ItemShardingService shardingService;
+
+    @Mock
+    private ItemJobResultRepository jobResultRepository;
+
+    private final ItemProcessingRuns runs = new ItemProcessingRuns();
+
+    private ItemProcessingJobService jobService;
+
+    @BeforeEach
+    public void setUp() {
+        //Run the coordinator inline, so the job is done when start() returns
+        jobService = new ItemProcessingJobService(itemService, shardingService, jobResultRepository, new ItemProcessingProperties(), inlineCoordinator(),
+                new ItemBatchBulkhead(2), runs);
+    }
+
+    @Test
+    public void testStartRunsJobAndTracksProgress() {
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        Item item2 = new Item(2L, "Item2", "Description2", "PROCESSED", "item2@example.com");
+        when(itemService.countItemsToProcess(false)).thenReturn(3L);
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(false))).thenAnswer(invocation -> {
+            ItemProcessingJob job = invocation.getArgument(0);
+            job.chunkProcessed(List.of(1L, 2L), List.of(item1, item2));
+            job.chunkFailed(List.of(3L));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        ItemProcessingJob job = jobService.start(false);
+        ItemProcessingJobStatus status = job.status();
+
+        assertEquals(ItemProcessingJob.State.COMPLETED, status.state());
+        assertEquals(3, status.total());
+        assertEquals(2, status.processed());
+        assertEquals(1, status.failed());
+        assertNull(status.etaSeconds(), "A finished job has no ETA");
+        assertSame(job, jobService.find(job.getId()).orElseThrow(), "The job should be found by its id");
+    }
+
+    @Test
+    public void testFailedRunMarksJobFailed() {
+        when(itemService.countItemsToProcess(false)).thenReturn(1L);
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(false)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("db down")));
+
+        ItemProcessingJobStatus status = jobService.start(false).status();
+
+        assertEquals(ItemProcessingJob.State.FAILED, status.state());
+        assertEquals("db down", status.error());
+    }
+
+    @Test
+    public void testFindResultsReadsTheJobsItemsAfterTheCursor() {
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        Item item2 = new Item(2L, "Item2", "Description2", "PROCESSED", "item2@example.com");
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(false))).thenReturn(CompletableFuture.completedFuture(null));
+        ItemProcessingJob job = jobService.start(false);
+        when(jobResultRepository.findItemsAfter(job.getId(), 5L, PageRequest.of(0, 2))).thenReturn(List.of(item1, item2));
+
+        ItemPage<Item> page = jobService.findResults(job.getId(), ItemCursor.encode(5L), 1).orElseThrow();
+
+        assertEquals(List.of(item1), page.items());
+        assertEquals(ItemCursor.encode(1L), page.nextCursor(), "There is a next page as one more row was found");
+        assertTrue(jobService.findResults("unknown", null, 2).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> jobService.findResults(job.getId(), "not-a-cursor", 2));
+    }
+
+    @Test
+    public void testIncrementalJobCountsOnlyUnprocessedItems() {
+        when(itemService.countItemsToProcess(true)).thenReturn(5L);
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(true))).thenReturn(CompletableFuture.completedFuture(null));
+
+        ItemProcessingJobStatus status = jobService.start(true).status();
+
+        assertEquals(5, status.total());
+        verify(itemService, never()).processItems(any(ItemProcessingJob.class), eq(false));
+    }
+
+    @Test
+    public void testStartJoinsRunningJobOfSameMode() {
+        CompletableFuture<Void> run = new CompletableFuture<>();
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(false))).thenReturn(run);
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(true))).thenReturn(CompletableFuture.completedFuture(null));
+
+        ItemProcessingJob first = jobService.start(false);
+        ItemProcessingJob second = jobService.start(false);
+        ItemProcessingJob incremental = jobService.start(true);
+
+        assertSame(first, second, "A second start while the job is running should return that job");
+        assertNotSame(first, incremental, "The other mode is a different run");
+        verify(itemService, times(1)).processItems(any(ItemProcessingJob.class), eq(false));
+
+        run.complete(null);
+        ItemProcessingJob afterwards = jobService.start(false);
+
+        assertNotSame(first, afterwards, "Once the job is done a new one is started");
+    }
+
+    @Test
+    public void testStartConflictsWithAProcessRunOfSameMode() {
+        CompletableFuture<List<Item>> processRun = new CompletableFuture<>();
+        runs.register(ItemProcessingRuns.mode(false), processRun);
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(true))).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThrows(ItemProcessingConflictException.class, () -> jobService.start(false));
+        assertNotNull(jobService.start(true), "The other mode is free");
+        verify(itemService, never()).processItems(any(ItemProcessingJob.class), eq(false));
+
+        runs.finished(ItemProcessingRuns.mode(false), processRun);
+        when(itemService.processItems(any(ItemProcessingJob.class), eq(false))).thenReturn(CompletableFuture.completedFuture(null));
+        assertEquals(ItemProcessingJob.State.COMPLETED, jobService.start(false).getState());
+    }
+
+    @Test
+    public void testShardedJobRunsOnTheShardingService() {
+        CompletableFuture<Void> run = new CompletableFuture<>();
+        when(shardingService.process(any(ItemProcessingJob.class), anyString(), eq(true), any())).thenReturn(run);
+
+        ItemProcessingJob job = jobService.startSharded("nightly", true);
+
+        assertSame(job, jobService.startSharded("nightly", true), "The same run should be joined while it is running");
+        assertNotSame(job, jobService.startSharded("other", true), "Another run id is another run");
+        run.complete(null);
+        assertEquals(ItemProcessingJob.State.COMPLETED, job.getState());
+        verify(itemService, never()).processItems(any(ItemProcessingJob.class), anyBoolean());
+    }
+
+    @Test
+    public void testUnknownJob() {
+        assertTrue(jobService.find("unknown").isEmpty());
+        assertTrue(jobService.findResults("unknown", null, 10).isEmpty());
+    }
+
+    //Runs the coordination on the calling thread
+    private static ItemProcessingCoordinator inlineCoordinator() {
+        ItemProcessingCoordinator coordinator = mock(ItemProcessingCoordinator.class);
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(coordinator).execute(any());
+        return coordinator;
+    }
+}
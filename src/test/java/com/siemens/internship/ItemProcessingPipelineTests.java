@@ -0,0 +1,122 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemProcessingPipelineTests {
+
+    private ExecutorService workers;
+
+    @BeforeEach
+    public void setUp() {
+        workers = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    //Returns chunks of one id each, from 1 to count
+    private static Supplier<List<Long>> source(int count, AtomicInteger read) {
+        return () -> read.get() < count ? List.of((long) read.incrementAndGet()) : List.of();
+    }
+
+    @Test
+    public void testSourceIsReadOnlyWhenThereIsRoom() {
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger inFlight = new AtomicInteger();
+
+        ItemProcessingPipeline pipeline = new ItemProcessingPipeline(source(200, read), ids -> CompletableFuture.supplyAsync(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            maxAhead.accumulateAndGet(read.get() - finished.get(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            finished.incrementAndGet();
+            return List.<Item>of();
+        }, workers), 2);
+
+        pipeline.run(workers, items -> {
+        }, (ids, e) -> fail(e)).join();
+
+        assertEquals(200, finished.get());
+        assertTrue(maxInFlight.get() <= 2, "At most 2 chunks should be in flight, saw " + maxInFlight.get());
+        //2 in flight + 2 buffered + the one being submitted
+        assertTrue(maxAhead.get() <= 5, "The source should not run ahead of the pipeline, saw " + maxAhead.get());
+    }
+
+    @Test
+    public void testEveryChunkReachesTheSink() {
+        Queue<Item> sink = new ConcurrentLinkedQueue<>();
+
+        new ItemProcessingPipeline(source(50, new AtomicInteger()), ids -> CompletableFuture.supplyAsync(
+                () -> List.of(new Item(ids.get(0), "Item", null, "PROCESSED", "item@example.com")), workers), 4)
+                .run(Runnable::run, sink::addAll, (ids, e) -> fail(e))
+                .join();
+
+        assertEquals(50, sink.size());
+    }
+
+    @Test
+    public void testFailedChunkDoesNotStopTheOthers() {
+        List<Long> failedIds = new ArrayList<>();
+        AtomicInteger processed = new AtomicInteger();
+
+        new ItemProcessingPipeline(source(10, new AtomicInteger()), ids -> CompletableFuture.supplyAsync(() -> {
+            if (ids.get(0) == 5L) {
+                throw new IllegalStateException("db down");
+            }
+            processed.incrementAndGet();
+            return List.<Item>of();
+        }, workers), 2).run(Runnable::run, items -> {
+        }, (ids, e) -> {
+            assertInstanceOf(IllegalStateException.class, e);
+            synchronized (failedIds) {
+                failedIds.addAll(ids);
+            }
+        }).join();
+
+        assertEquals(List.of(5L), failedIds);
+        assertEquals(9, processed.get());
+    }
+
+    @Test
+    public void testSourceFailureFailsTheRun() {
+        ItemProcessingPipeline pipeline = new ItemProcessingPipeline(() -> {
+            throw new IllegalStateException("db down");
+        }, ids -> CompletableFuture.completedFuture(List.of()), 2);
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> pipeline.run(Runnable::run, items -> {
+                }, (ids, e) -> {
+                }).join());
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+
+    @Test
+    public void testDepthMustBePositive() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ItemProcessingPipeline(List::of, ids -> CompletableFuture.completedFuture(List.of()), 0));
+    }
+}
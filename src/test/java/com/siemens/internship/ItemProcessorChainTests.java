@@ -0,0 +1,127 @@
+package com.siemens.internship;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemProcessorChainTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService ioExecutor;
+    private ItemProcessorChain chain;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ioExecutor = Executors.newFixedThreadPool(4, new CustomizableThreadFactory("test-io-"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (chain != null) {
+            chain.close();
+        }
+    }
+
+    private static List<Item> items(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> new Item((long) i, "Item" + i, "Description" + i, "NEW", "item" + i + "@example.com"))
+                .toList();
+    }
+
+    @Test
+    public void testStepsAreAppliedInOrder() {
+        //The description records the steps an item went through
+        ItemProcessor first = item -> item.setDescription("first");
+        ItemProcessor second = item -> item.setDescription(item.getDescription() + ",second");
+        chain = new ItemProcessorChain(List.of(first, second, new StatusItemProcessor()), new ForkJoinPool(2), ioExecutor, meterRegistry);
+
+        List<Item> items = items(20);
+        chain.apply(items);
+
+        assertTrue(items.stream().allMatch(item -> "first,second".equals(item.getDescription())));
+        assertTrue(items.stream().allMatch(item -> "PROCESSED".equals(item.getStatus())));
+    }
+
+    @Test
+    public void testStepsRunOnThePoolOfTheirKind() {
+        Queue<String> cpuThreads = new ConcurrentLinkedQueue<>();
+        Queue<String> ioThreads = new ConcurrentLinkedQueue<>();
+        ItemProcessor cpuStep = item -> cpuThreads.add(Thread.currentThread().getName());
+        ItemProcessor ioStep = new ItemProcessor() {
+            @Override
+            public void process(Item item) {
+                ioThreads.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public Kind kind() {
+                return Kind.IO_BOUND;
+            }
+        };
+        chain = new ItemProcessorChain(List.of(cpuStep, ioStep), new ForkJoinPool(2), ioExecutor, meterRegistry);
+
+        chain.apply(items(10));
+
+        assertEquals(10, cpuThreads.size());
+        assertEquals(10, ioThreads.size());
+        assertTrue(cpuThreads.stream().allMatch(name -> name.contains("ForkJoinPool")), "CPU steps should run on the ForkJoinPool");
+        assertTrue(ioThreads.stream().allMatch(name -> name.startsWith("test-io-")), "IO steps should run on the IO executor");
+    }
+
+    @Test
+    public void testEveryStepIsTimed() {
+        chain = new ItemProcessorChain(List.of(new StatusItemProcessor()), new ForkJoinPool(2), ioExecutor, meterRegistry);
+
+        chain.apply(items(3));
+
+        assertEquals(3, meterRegistry.get("item.processing.step").tag("step", "StatusItemProcessor").timer().count());
+        assertEquals(3, meterRegistry.get("item.processing.item").timer().count());
+    }
+
+    @Test
+    public void testFailureIsThrownAsIs() {
+        List<String> seen = new ArrayList<>();
+        ItemProcessor failing = item -> {
+            throw new IllegalStateException("boom");
+        };
+        ItemProcessor after = item -> {
+            synchronized (seen) {
+                seen.add(item.getName());
+            }
+        };
+        chain = new ItemProcessorChain(List.of(failing, after), new ForkJoinPool(2), ioExecutor, meterRegistry);
+
+        assertThrows(IllegalStateException.class, () -> chain.apply(items(5)));
+        assertTrue(seen.isEmpty(), "The steps after a failed one should not run");
+    }
+
+    @Test
+    public void testCoveredByBulkUpdateOnlyWithStatusSteps() {
+        ItemProcessingProperties properties = new ItemProcessingProperties();
+        chain = new ItemProcessorChain(List.of(new SimulatedWorkItemProcessor(properties), new StatusItemProcessor()),
+                new ForkJoinPool(2), ioExecutor, meterRegistry);
+
+        assertFalse(chain.isCoveredByBulkUpdate(), "The simulated work would be skipped");
+        properties.setDelayMs(0);
+        assertTrue(chain.isCoveredByBulkUpdate());
+
+        chain.close();
+        chain = new ItemProcessorChain(List.of(item -> item.setDescription("enriched"), new StatusItemProcessor()),
+                new ForkJoinPool(2), ioExecutor, meterRegistry);
+        assertFalse(chain.isCoveredByBulkUpdate(), "Steps are not covered unless they say so");
+    }
+}
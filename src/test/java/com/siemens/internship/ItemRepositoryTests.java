@@ -4,6 +4,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
@@ -16,8 +22,18 @@ public class ItemRepositoryTests {
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private ItemJobResultRepository jobResultRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @BeforeEach
     public void setUp() {
+        jobResultRepository.deleteAll();
         itemRepository.deleteAll();
     }
 
@@ -32,6 +48,7 @@ public class ItemRepositoryTests {
         Item savedItem = itemRepository.save(item);
 
         assertNotNull(savedItem.getId(), "The saved item should have an ID");
+        assertEquals(0L, savedItem.getVersion(), "A new item should start at version 0");
         assertEquals("Test Item", savedItem.getName(), "The saved item should have the correct name");
     }
 
@@ -110,4 +127,170 @@ public class ItemRepositoryTests {
         assertTrue(ids.contains(item1.getId()), "Should contain the ID of the first item");
         assertTrue(ids.contains(item2.getId()), "Should contain the ID of the second item");
     }
+
+    @Test
+    public void testFindPageAfter() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item item2 = itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        Item item3 = itemRepository.save(new Item(null, "Item3", "Description3", "NEW", "item3@example.com"));
+
+        List<Item> firstPage = itemRepository.findPageAfter(0L, null, null, PageRequest.of(0, 2));
+        List<Item> secondPage = itemRepository.findPageAfter(firstPage.get(1).getId(), null, null, PageRequest.of(0, 2));
+
+        assertEquals(List.of(item1.getId(), item2.getId()), firstPage.stream().map(Item::getId).toList(), "First page should hold the lowest ids");
+        assertEquals(List.of(item3.getId()), secondPage.stream().map(Item::getId).toList(), "Second page should continue after the last id");
+    }
+
+    @Test
+    public void testFindPageAfterWithFilters() {
+        itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item item2 = itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        itemRepository.save(new Item(null, "Item3", "Description3", "NEW", "item3@example.com"));
+
+        List<Item> processed = itemRepository.findPageAfter(0L, "PROCESSED", null, PageRequest.of(0, 10));
+        List<Item> byEmail = itemRepository.findPageAfter(0L, null, "item3@example.com", PageRequest.of(0, 10));
+
+        assertEquals(List.of(item2.getId()), processed.stream().map(Item::getId).toList(), "Should filter by status");
+        assertEquals(1, byEmail.size(), "Should filter by email");
+        assertEquals("Item3", byEmail.get(0).getName());
+    }
+
+    @Test
+    public void testFindUnprocessedIdsAfter() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        Item item3 = itemRepository.save(new Item(null, "Item3", "Description3", null, "item3@example.com"));
+
+        List<Long> ids = itemRepository.findUnprocessedIdsAfter(0L, PageRequest.of(0, 10));
+
+        assertEquals(List.of(item1.getId(), item3.getId()), ids, "Only the items that are not PROCESSED should be returned");
+        assertEquals(2, itemRepository.countUnprocessed());
+    }
+
+    @Test
+    public void testFindIdsBetween() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item item2 = itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        Item item3 = itemRepository.save(new Item(null, "Item3", "Description3", "NEW", "item3@example.com"));
+
+        List<Long> ids = itemRepository.findIdsBetween(item1.getId(), item3.getId(), PageRequest.of(0, 10));
+        List<Long> unprocessed = itemRepository.findUnprocessedIdsBetween(0L, item2.getId(), PageRequest.of(0, 10));
+
+        assertEquals(List.of(item2.getId(), item3.getId()), ids, "The start is exclusive, the end inclusive");
+        assertEquals(List.of(item1.getId()), unprocessed);
+        assertEquals(item3.getId(), itemRepository.findMaxId());
+    }
+
+    @Test
+    public void testMarkAllProcessed() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        itemRepository.save(new Item(null, "Item3", "Description3", null, "item3@example.com"));
+        itemRepository.flush();
+
+        int updated = itemRepository.markAllProcessed();
+
+        assertEquals(2, updated, "Only the unprocessed items should be updated");
+        assertEquals(1L, itemRepository.findById(item1.getId()).orElseThrow().getVersion(), "The bulk update should bump the version");
+        assertEquals(0, itemRepository.countUnprocessed());
+        assertTrue(itemRepository.findAll().stream().allMatch(item -> "PROCESSED".equals(item.getStatus())));
+    }
+
+    @Test
+    public void testFindAllSummaries() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item item2 = itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+
+        List<ItemSummary> summaries = itemRepository.findAllSummaries();
+
+        assertEquals(List.of(new ItemSummary(item1.getId(), "Item1", "NEW"), new ItemSummary(item2.getId(), "Item2", "PROCESSED")),
+                summaries, "Should return id, name and status of every item");
+    }
+
+    @Test
+    public void testFindSummaryPageAfterWithFilter() {
+        itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item item2 = itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+
+        List<ItemSummary> summaries = itemRepository.findSummaryPageAfter(0L, "PROCESSED", null, PageRequest.of(0, 10));
+
+        assertEquals(List.of(new ItemSummary(item2.getId(), "Item2", "PROCESSED")), summaries);
+    }
+
+    @Test
+    public void testFindByStatusOrderById() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        Item item3 = itemRepository.save(new Item(null, "Item3", "Description3", "NEW", "item3@example.com"));
+
+        List<Item> items = itemRepository.findByStatusOrderById("NEW", PageRequest.of(0, 10));
+        List<Item> firstOnly = itemRepository.findByStatusOrderById("NEW", PageRequest.of(0, 1));
+
+        assertEquals(List.of(item1.getId(), item3.getId()), items.stream().map(Item::getId).toList(), "Should only return NEW items in id order");
+        assertEquals(List.of(item1.getId()), firstOnly.stream().map(Item::getId).toList(), "Should respect the page size");
+    }
+
+    @Test
+    public void testFindJobResultsAfter() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "PROCESSED", "item1@example.com"));
+        Item item2 = itemRepository.save(new Item(null, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        Item item3 = itemRepository.save(new Item(null, "Item3", "Description3", "PROCESSED", "item3@example.com"));
+        jobResultRepository.saveAll(List.of(new ItemJobResult("job1", item1.getId()), new ItemJobResult("job1", item3.getId()),
+                new ItemJobResult("job2", item2.getId())));
+
+        List<Item> items = jobResultRepository.findItemsAfter("job1", 0L, PageRequest.of(0, 10));
+        List<Item> afterFirst = jobResultRepository.findItemsAfter("job1", item1.getId(), PageRequest.of(0, 10));
+        int deleted = jobResultRepository.deleteByJobIds(List.of("job1"));
+
+        assertEquals(List.of(item1.getId(), item3.getId()), items.stream().map(Item::getId).toList(), "Should only return the job's items in id order");
+        assertEquals(List.of(item3.getId()), afterFirst.stream().map(Item::getId).toList());
+        assertEquals(2, deleted);
+        assertTrue(jobResultRepository.findItemsAfter("job1", 0L, PageRequest.of(0, 10)).isEmpty());
+        assertEquals(1, jobResultRepository.findItemsAfter("job2", 0L, PageRequest.of(0, 10)).size(), "Other jobs' results should be kept");
+    }
+
+    @Test
+    public void testExistsByEmail() {
+        itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        //The same email on another item is allowed
+        itemRepository.save(new Item(null, "Item2", "Description2", "NEW", "item1@example.com"));
+
+        assertTrue(itemRepository.existsByEmail("item1@example.com"));
+        assertFalse(itemRepository.existsByEmail("other@example.com"));
+    }
+
+    @Test
+    public void testFindVersionById() {
+        Item item = itemRepository.saveAndFlush(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+
+        ItemVersion version = itemRepository.findVersionById(item.getId()).orElseThrow();
+
+        assertEquals(0L, version.version());
+        assertNotNull(version.lastModified(), "The last change should be set on insert");
+        assertTrue(itemRepository.findVersionById(item.getId() + 1000).isEmpty());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testTableVersionChangesAfterCommit() {
+        ItemTableVersion tableVersion = new ItemTableVersion(jdbcTemplate);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long before = tableVersion.current();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            itemRepository.saveAndFlush(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+            tableVersion.changed();
+            assertEquals(before, tableVersion.current(), "The version should not change before the commit");
+        });
+        long committed = tableVersion.current();
+        transactionTemplate.executeWithoutResult(status -> {
+            tableVersion.changed();
+            status.setRollbackOnly();
+        });
+
+        assertTrue(committed > before);
+        assertEquals(committed, tableVersion.current(), "A rolled back transaction should not change the version");
+        tableVersion.changed();
+        assertTrue(tableVersion.current() > committed, "Without a transaction the version should change right away");
+    }
 }
@@ -1,17 +1,30 @@
 package com.siemens.internship;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,11 +35,44 @@ public class ItemServiceTests {
     @Mock
     private ItemRepository itemRepository;
 
-    @InjectMocks
+    @Mock
+    private ItemChunkProcessor chunkProcessor;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache itemCache;
+
+    @Mock
+    private ItemProcessorChain processorChain;
+
+    @Mock
+    private ItemTableVersion tableVersion;
+
+    private ItemProcessingProperties properties;
+    private ItemProcessingExecutor executor;
     private ItemService itemService;
+    private SimpleMeterRegistry meterRegistry;
+    private ItemProcessingRuns runs;
 
     @BeforeEach
     public void setUp() {
+        properties = new ItemProcessingProperties();
+        executor = new ItemProcessingExecutor(Executors.newFixedThreadPool(2), 2);
+        when(cacheManager.getCache(ItemService.ITEM_CACHE)).thenReturn(itemCache);
+        meterRegistry = new SimpleMeterRegistry();
+        runs = new ItemProcessingRuns();
+        itemService = new ItemService(itemRepository, chunkProcessor, processorChain, tableVersion, properties, entityManager, executor, cacheManager, meterRegistry, inlineCoordinator(),
+                new ItemBatchBulkhead(2), runs);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.close();
     }
 
     @Test
@@ -45,6 +91,64 @@ public class ItemServiceTests {
         verify(itemRepository, times(1)).findAll();
     }
 
+    @Test
+    public void testStreamAllDetachesEveryItem() {
+        Item item1 = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        Item item2 = new Item(2L, "Item2", "Description2", "NEW", "item2@example.com");
+        when(itemRepository.streamAll()).thenReturn(Stream.of(item1, item2));
+
+        List<Item> consumed = new ArrayList<>();
+        itemService.streamAll(consumed::add);
+
+        assertEquals(List.of(item1, item2), consumed, "Should hand every item to the consumer in order");
+        verify(entityManager, times(1)).detach(item1);
+        verify(entityManager, times(1)).detach(item2);
+        verify(itemRepository, never()).findAll();
+    }
+
+    @Test
+    public void testFindPageReturnsCursorWhenMoreItemsExist() {
+        Item item1 = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        Item item2 = new Item(2L, "Item2", "Description2", "NEW", "item2@example.com");
+        Item item3 = new Item(3L, "Item3", "Description3", "NEW", "item3@example.com");
+        when(itemRepository.findPageAfter(0L, null, null, PageRequest.of(0, 3))).thenReturn(List.of(item1, item2, item3));
+
+        ItemPage<Item> page = itemService.findPage(null, 2, null, null);
+
+        assertEquals(List.of(item1, item2), page.items(), "Should return only limit items");
+        assertEquals(2L, ItemCursor.decode(page.nextCursor()), "The cursor should point after the last returned item");
+    }
+
+    @Test
+    public void testFindPageLastPageHasNoCursor() {
+        Item item3 = new Item(3L, "Item3", "Description3", "NEW", "item3@example.com");
+        when(itemRepository.findPageAfter(2L, "NEW", null, PageRequest.of(0, 3))).thenReturn(List.of(item3));
+
+        ItemPage<Item> page = itemService.findPage(ItemCursor.encode(2L), 2, "NEW", null);
+
+        assertEquals(List.of(item3), page.items());
+        assertNull(page.nextCursor(), "The last page should not have a cursor");
+    }
+
+    @Test
+    public void testFindSummaryPage() {
+        ItemSummary summary1 = new ItemSummary(1L, "Item1", "NEW");
+        ItemSummary summary2 = new ItemSummary(2L, "Item2", "NEW");
+        when(itemRepository.findSummaryPageAfter(0L, null, null, PageRequest.of(0, 2))).thenReturn(List.of(summary1, summary2));
+
+        ItemPage<ItemSummary> page = itemService.findSummaryPage(null, 1, null, null);
+
+        assertEquals(List.of(summary1), page.items());
+        assertEquals(1L, ItemCursor.decode(page.nextCursor()));
+        verify(itemRepository, never()).findPageAfter(anyLong(), any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    public void testFindPageWithInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> itemService.findPage("bm90LWEtY3Vyc29y", 2, null, null));
+        verify(itemRepository, never()).findPageAfter(anyLong(), any(), any(), any(Pageable.class));
+    }
+
     @Test
     public void testFindItemById() {
         Item item = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
@@ -84,6 +188,7 @@ public class ItemServiceTests {
 
         assertEquals(item, result, "The saved item should be the same as the input item");
         verify(itemRepository, times(1)).save(item);
+        verify(tableVersion).changed();
     }
 
     @Test
@@ -92,6 +197,7 @@ public class ItemServiceTests {
 
         assertNull(result, "Saving a null item should return null");
         verify(itemRepository, times(0)).save(null);
+        verify(tableVersion, never()).changed();
     }
 
     @Test
@@ -101,6 +207,7 @@ public class ItemServiceTests {
         itemService.deleteById(1L);
 
         verify(itemRepository, times(1)).deleteById(1L);
+        verify(tableVersion).changed();
     }
 
     @Test
@@ -112,37 +219,369 @@ public class ItemServiceTests {
         verify(itemRepository, times(1)).deleteById(999L);
     }
 
+    @Test
+    public void testFindVersionUsesTheCachedItem() {
+        Item item = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        item.setVersion(4L);
+        when(itemCache.get(1L, Item.class)).thenReturn(item);
+
+        assertEquals(Optional.of(new ItemVersion(4L, null)), itemService.findVersion(1L));
+        verify(itemRepository, never()).findVersionById(anyLong());
+    }
+
+    @Test
+    public void testFindVersionWithoutCachedItem() {
+        ItemVersion version = new ItemVersion(2L, Instant.parse("2025-01-01T10:00:00Z"));
+        when(itemRepository.findVersionById(1L)).thenReturn(Optional.of(version));
+
+        assertEquals(Optional.of(version), itemService.findVersion(1L));
+        verify(itemRepository, never()).findById(anyLong());
+    }
+
     @Test
     public void testProcessItemsAsyncWithEmptyList() throws ExecutionException, InterruptedException {
-        when(itemRepository.findAllIds()).thenReturn(List.of());
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of());
 
         CompletableFuture<List<Item>> future = itemService.processItemsAsync();
         List<Item> processedItems = future.get();
 
         assertEquals(0, processedItems.size(), "Should process no items if list is empty");
-        verify(itemRepository, times(1)).findAllIds();
-        verify(itemRepository, times(0)).findById(anyLong());
-        verify(itemRepository, times(0)).save(any(Item.class));
+        verify(itemRepository, times(1)).findIdsAfter(eq(0L), any(Pageable.class));
+        verify(chunkProcessor, never()).processChunk(anyList(), any());
     }
 
     @Test
     public void testProcessItemsAsyncWithMissingItems() throws ExecutionException, InterruptedException {
-        List<Long> itemIds = List.of(1L, 2L, 3L);
-        Item item1 = new Item(1L, "Item1", "Description1", "NEW", "item1@example.com");
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
 
-        when(itemRepository.findAllIds()).thenReturn(itemIds);
-        when(itemRepository.findById(1L)).thenReturn(Optional.of(item1));
-        when(itemRepository.findById(2L)).thenReturn(Optional.empty());
-        when(itemRepository.findById(3L)).thenReturn(Optional.empty());
-        when(itemRepository.save(any(Item.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L, 3L));
+        when(chunkProcessor.processChunk(eq(List.of(1L, 2L, 3L)), any())).thenReturn(List.of(item1));
 
         CompletableFuture<List<Item>> future = itemService.processItemsAsync();
         List<Item> processedItems = future.get();
 
         assertEquals(1, processedItems.size(), "Should only process existing items");
         assertEquals("PROCESSED", processedItems.get(0).getStatus());
-        verify(itemRepository, times(1)).findAllIds();
-        verify(itemRepository, times(3)).findById(anyLong());
-        verify(itemRepository, times(1)).save(any(Item.class));
+        assertEquals(1.0, processingCount("success"));
+        assertEquals(2.0, processingCount("skipped"));
+        verify(itemRepository, times(1)).findIdsAfter(eq(0L), any(Pageable.class));
+        verify(chunkProcessor, times(1)).processChunk(anyList(), any());
+    }
+
+    @Test
+    public void testProcessItemsAsyncReadsIdsInChunks() throws ExecutionException, InterruptedException {
+        properties.setChunkSize(2);
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        Item item2 = new Item(2L, "Item2", "Description2", "PROCESSED", "item2@example.com");
+        Item item3 = new Item(3L, "Item3", "Description3", "PROCESSED", "item3@example.com");
+
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(itemRepository.findIdsAfter(eq(2L), any(Pageable.class))).thenReturn(List.of(3L));
+        when(chunkProcessor.processChunk(eq(List.of(1L, 2L)), any())).thenReturn(List.of(item1, item2));
+        when(chunkProcessor.processChunk(eq(List.of(3L)), any())).thenReturn(List.of(item3));
+
+        List<Item> processedItems = itemService.processItemsAsync().get();
+
+        assertEquals(List.of(item1, item2, item3), processedItems, "Should return the items of every chunk");
+        verify(itemCache).evict(1L);
+        verify(itemCache).evict(2L);
+        verify(itemCache).evict(3L);
+        //The last chunk was not full, so there is no extra query for an empty chunk
+        verify(itemRepository, times(2)).findIdsAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testConcurrentProcessItemsAsyncCallsShareOneRun() throws Exception {
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        CountDownLatch chunkStarted = new CountDownLatch(1);
+        CountDownLatch releaseChunk = new CountDownLatch(1);
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(chunkProcessor.processChunk(eq(List.of(1L)), any())).thenAnswer(invocation -> {
+            chunkStarted.countDown();
+            releaseChunk.await();
+            return List.of(item1);
+        });
+
+        CompletableFuture<List<Item>> first = itemService.processItemsAsync();
+        assertTrue(chunkStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<Item>> second = itemService.processItemsAsync();
+        //Cancelling one caller's future doesn't cancel the shared run
+        second.cancel(true);
+        CompletableFuture<List<Item>> third = itemService.processItemsAsync();
+        releaseChunk.countDown();
+
+        assertEquals(List.of(item1), first.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(item1), third.get(5, TimeUnit.SECONDS));
+        verify(chunkProcessor, times(1)).processChunk(eq(List.of(1L)), any());
+
+        //The run is done, the next call starts a new one
+        itemService.processItemsAsync().get(5, TimeUnit.SECONDS);
+        verify(chunkProcessor, times(2)).processChunk(eq(List.of(1L)), any());
+    }
+
+    @Test
+    public void testProcessItemsAsyncConflictsWithARunningJobOfSameMode() {
+        ItemProcessingJob job = new ItemProcessingJob();
+        runs.register(ItemProcessingRuns.mode(false), job);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> itemService.processItemsAsync().get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(ItemProcessingConflictException.class, error.getCause());
+        verify(itemRepository, never()).findIdsAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testProcessRangeStaysInsideTheRange() throws Exception {
+        properties.setChunkSize(2);
+        Item item11 = new Item(11L, "Item11", "Description11", "PROCESSED", "item11@example.com");
+        Item item12 = new Item(12L, "Item12", "Description12", "PROCESSED", "item12@example.com");
+        when(itemRepository.findUnprocessedIdsBetween(eq(10L), eq(20L), any(Pageable.class))).thenReturn(List.of(11L, 12L));
+        when(chunkProcessor.processChunk(eq(List.of(11L, 12L)), any())).thenReturn(List.of(item11, item12));
+        ItemProcessingJob job = new ItemProcessingJob();
+        AtomicInteger chunksAllowed = new AtomicInteger(1);
+
+        //The second chunk is not read: keepGoing says the partition was lost in the meantime
+        boolean complete = itemService.processRange(job, true, 10L, 20L, () -> chunksAllowed.getAndDecrement() > 0).get(5, TimeUnit.SECONDS);
+
+        assertTrue(complete, "No chunk failed");
+        assertEquals(2, job.status().processed());
+        verify(itemRepository, times(1)).findUnprocessedIdsBetween(anyLong(), anyLong(), any(Pageable.class));
+        verify(itemRepository, never()).findUnprocessedIdsAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testProcessRangeReportsFailedChunks() throws Exception {
+        properties.setChunkSize(2);
+        when(itemRepository.findIdsBetween(eq(10L), eq(20L), any(Pageable.class))).thenReturn(List.of(11L));
+        when(chunkProcessor.processChunk(eq(List.of(11L)), any())).thenThrow(new IllegalStateException("db down"));
+        ItemProcessingJob job = new ItemProcessingJob();
+
+        assertFalse(itemService.processRange(job, false, 10L, 20L, () -> true).get(5, TimeUnit.SECONDS),
+                "A failed chunk should be reported, so the partition isn't marked done");
+        assertEquals(1, job.status().failed());
+    }
+
+    @Test
+    public void testProcessItemsAsyncPropagatesChunkFailure() {
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(chunkProcessor.processChunk(eq(List.of(1L)), any())).thenThrow(new IllegalStateException("db down"));
+
+        CompletableFuture<List<Item>> future = itemService.processItemsAsync();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(IllegalStateException.class, exception.getCause().getCause());
+        assertEquals(1.0, processingCount("failure"));
+    }
+
+    @Test
+    public void testProcessItemsReportsProgressOnJob() {
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        properties.setChunkSize(2);
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(itemRepository.findIdsAfter(eq(2L), any(Pageable.class))).thenReturn(List.of(3L));
+        when(chunkProcessor.processChunk(eq(List.of(1L, 2L)), any())).thenReturn(List.of(item1));
+        when(chunkProcessor.processChunk(eq(List.of(3L)), any())).thenThrow(new IllegalStateException("db down"));
+
+        ItemProcessingJob job = new ItemProcessingJob();
+        //A failed chunk doesn't fail the whole run
+        itemService.processItems(job, false).join();
+
+        ItemProcessingJobStatus status = job.status();
+        assertEquals(1, status.processed());
+        assertEquals(1, status.skipped());
+        assertEquals(1, status.failed());
+        verify(chunkProcessor).processChunk(List.of(1L, 2L), job.getId());
+    }
+
+    @Test
+    public void testIncrementalProcessingOnlyReadsUnprocessedIds() throws ExecutionException, InterruptedException {
+        Item item2 = new Item(2L, "Item2", "Description2", "PROCESSED", "item2@example.com");
+        when(itemRepository.findUnprocessedIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(2L));
+        when(chunkProcessor.processChunk(eq(List.of(2L)), any())).thenReturn(List.of(item2));
+
+        List<Item> processedItems = itemService.processItemsAsync(true).get();
+
+        assertEquals(List.of(item2), processedItems);
+        verify(itemRepository, never()).findIdsAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testMarkAllProcessed() {
+        when(processorChain.isCoveredByBulkUpdate()).thenReturn(true);
+        when(itemRepository.markAllProcessed()).thenReturn(4);
+
+        assertEquals(4, itemService.markAllProcessed());
+        assertEquals(4.0, processingCount("success"));
+        verify(tableVersion).changed();
+    }
+
+    @Test
+    public void testMarkAllProcessedWithoutChangesKeepsTheTableVersion() {
+        when(processorChain.isCoveredByBulkUpdate()).thenReturn(true);
+        when(itemRepository.markAllProcessed()).thenReturn(0);
+
+        assertEquals(0, itemService.markAllProcessed());
+        verify(tableVersion, never()).changed();
+    }
+
+    @Test
+    public void testMarkAllProcessedRefusedWhenStepsWouldBeSkipped() {
+        when(processorChain.isCoveredByBulkUpdate()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> itemService.markAllProcessed());
+        verify(itemRepository, never()).markAllProcessed();
+    }
+
+    @Test
+    public void testCountItemsToProcess() {
+        when(itemRepository.count()).thenReturn(10L);
+        when(itemRepository.countUnprocessed()).thenReturn(3L);
+
+        assertEquals(10L, itemService.countItemsToProcess(false));
+        assertEquals(3L, itemService.countItemsToProcess(true));
+    }
+
+    @Test
+    public void testUpdateReplacesAllFields() {
+        Item existing = new Item(1L, "Old", "Old Description", "NEW", "old@example.com");
+        existing.setVersion(1L);
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(itemRepository.saveAndFlush(existing)).thenReturn(existing);
+
+        Optional<Item> result = itemService.update(1L, new Item(null, "New", null, "DONE", "new@example.com"), 1L, false);
+
+        assertTrue(result.isPresent());
+        assertEquals("New", existing.getName());
+        assertNull(existing.getDescription(), "PUT replaces every field, also with null");
+        assertEquals("new@example.com", existing.getEmail());
+        verify(itemRepository, never()).save(any(Item.class));
+        verify(tableVersion).changed();
+    }
+
+    @Test
+    public void testPartialUpdateKeepsMissingFields() {
+        Item existing = new Item(1L, "Old", "Old Description", "NEW", "old@example.com");
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(itemRepository.saveAndFlush(existing)).thenReturn(existing);
+
+        itemService.update(1L, new Item(null, null, null, "DONE", null), null, true);
+
+        assertEquals("Old", existing.getName());
+        assertEquals("Old Description", existing.getDescription());
+        assertEquals("DONE", existing.getStatus());
+    }
+
+    @Test
+    public void testUpdateWithStaleVersion() {
+        Item existing = new Item(1L, "Old", "Old Description", "NEW", "old@example.com");
+        existing.setVersion(5L);
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(existing));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> itemService.update(1L, new Item(null, "New", null, null, null), 4L, true));
+        assertEquals("Old", existing.getName(), "Nothing should be changed");
+        verify(itemRepository, never()).saveAndFlush(any(Item.class));
+        verify(tableVersion, never()).changed();
+    }
+
+    @Test
+    public void testUpdateNotFound() {
+        when(itemRepository.findById(9L)).thenReturn(Optional.empty());
+
+        assertTrue(itemService.update(9L, new Item(), null, false).isEmpty());
+    }
+
+    @Test
+    public void testProcessingRetriesChunkOnConflict() throws ExecutionException, InterruptedException {
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(chunkProcessor.processChunk(eq(List.of(1L)), any()))
+                .thenThrow(new OptimisticLockingFailureException("changed by a user"))
+                .thenReturn(List.of(item1));
+
+        List<Item> processedItems = itemService.processItemsAsync().get();
+
+        assertEquals(List.of(item1), processedItems, "The chunk should be processed again after the conflict");
+        verify(chunkProcessor, times(2)).processChunk(eq(List.of(1L)), any());
+        //Only the final result of the chunk goes to the write-behind queue
+        verify(chunkProcessor, times(1)).queueStatusUpdates(eq(List.of(item1)), any(), any());
+    }
+
+    @Test
+    public void testProcessingGivesUpAfterMaxRetries() {
+        properties.setMaxRetries(1);
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(chunkProcessor.processChunk(eq(List.of(1L)), any())).thenThrow(new OptimisticLockingFailureException("changed by a user"));
+
+        assertThrows(ExecutionException.class, () -> itemService.processItemsAsync().get());
+        verify(chunkProcessor, times(2)).processChunk(eq(List.of(1L)), any());
+        verify(chunkProcessor, never()).queueStatusUpdates(anyList(), any(), any());
+    }
+
+    @Test
+    public void testConflictingStatusUpdateIsProcessedAgain() throws Exception {
+        Item processed = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        Item processedAgain = new Item(1L, "Renamed", "Description1", "PROCESSED", "item1@example.com");
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(chunkProcessor.processChunk(eq(List.of(1L)), any())).thenReturn(List.of(processed), List.of(processedAgain));
+        //The write-behind found another version for the first update of item 1
+        doAnswer(invocation -> {
+            invocation.<ItemStatusWriteBehind.Outcome>getArgument(2).conflicted(1L);
+            return null;
+        }).doNothing().when(chunkProcessor).queueStatusUpdates(anyList(), any(), any());
+
+        List<Item> processedItems = itemService.processItemsAsync().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(processedAgain), processedItems, "The item should be loaded and processed again with the change");
+        verify(chunkProcessor, times(2)).processChunk(eq(List.of(1L)), any());
+        verify(chunkProcessor, times(2)).flushPending();
+    }
+
+    @Test
+    public void testConflictingStatusUpdateGivesUpAfterMaxRetries() {
+        properties.setMaxRetries(1);
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(chunkProcessor.processChunk(eq(List.of(1L)), any())).thenReturn(List.of(item1));
+        doAnswer(invocation -> {
+            invocation.<ItemStatusWriteBehind.Outcome>getArgument(2).conflicted(1L);
+            return null;
+        }).when(chunkProcessor).queueStatusUpdates(anyList(), any(), any());
+
+        assertThrows(ExecutionException.class, () -> itemService.processItemsAsync().get(5, TimeUnit.SECONDS));
+        verify(chunkProcessor, times(2)).processChunk(eq(List.of(1L)), any());
+        assertEquals(1.0, processingCount("failure"));
+    }
+
+    @Test
+    public void testFailedStatusWriteFailsTheJobsItems() throws Exception {
+        Item item1 = new Item(1L, "Item1", "Description1", "PROCESSED", "item1@example.com");
+        Item item2 = new Item(2L, "Item2", "Description2", "PROCESSED", "item2@example.com");
+        when(itemRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(chunkProcessor.processChunk(eq(List.of(1L, 2L)), any())).thenReturn(List.of(item1, item2));
+        doAnswer(invocation -> {
+            invocation.<ItemStatusWriteBehind.Outcome>getArgument(2).failed(2L);
+            return null;
+        }).when(chunkProcessor).queueStatusUpdates(anyList(), any(), any());
+        ItemProcessingJob job = new ItemProcessingJob();
+
+        itemService.processItems(job, false).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, job.status().processed());
+        assertEquals(1, job.status().failed(), "The item whose status wasn't written should count as failed");
+    }
+
+    private double processingCount(String result) {
+        return meterRegistry.get("item.processing.items").tag("result", result).counter().count();
+    }
+
+    //Runs the coordination on the calling thread
+    private static ItemProcessingCoordinator inlineCoordinator() {
+        ItemProcessingCoordinator coordinator = mock(ItemProcessingCoordinator.class);
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(coordinator).execute(any());
+        return coordinator;
     }
-}
\ No newline at end of file
+}
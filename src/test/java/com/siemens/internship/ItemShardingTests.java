@@ -0,0 +1,137 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Two application contexts in one JVM against the same file database stand in for two instances
+public class ItemShardingTests {
+
+    @TempDir
+    Path directory;
+
+    private ConfigurableApplicationContext start(String nodeId, ItemProcessor... extraSteps) {
+        return new SpringApplicationBuilder(InternshipApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(context -> {
+                    for (int i = 0; i < extraSteps.length; i++) {
+                        context.getBeanFactory().registerSingleton("extraStep" + i, extraSteps[i]);
+                    }
+                })
+                .profiles("file")
+                .run("--item.db.path=" + directory.resolve("items"),
+                        "--item.processing.delay-ms=50",
+                        "--item.processing.chunk-size=5",
+                        "--item.processing.sharding.partition-size=10",
+                        "--item.processing.sharding.node-id=" + nodeId);
+    }
+
+    private static void populate(ConfigurableApplicationContext context, int rows) {
+        List<Object[]> batch = new ArrayList<>();
+        for (long id = 1; id <= rows; id++) {
+            batch.add(new Object[]{id, "Item" + id, "Description" + id, "NEW", "item" + id + "@example.com"});
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO item (id, name, description, status, email, version) VALUES (?, ?, ?, ?, ?, 0)", batch);
+    }
+
+    @Test
+    public void testTwoInstancesSplitTheRun() throws Exception {
+        //Started one after the other, so they don't both create the tables
+        try (ConfigurableApplicationContext nodeA = start("node-a"); ConfigurableApplicationContext nodeB = start("node-b")) {
+            populate(nodeA, 100);
+            ItemProcessingJob jobA = new ItemProcessingJob();
+            ItemProcessingJob jobB = new ItemProcessingJob();
+
+            CompletableFuture.allOf(
+                    nodeA.getBean(ItemShardingService.class).process(jobA, "run-1", false, ForkJoinPool.commonPool()),
+                    nodeB.getBean(ItemShardingService.class).process(jobB, "run-1", false, ForkJoinPool.commonPool())
+            ).get(60, TimeUnit.SECONDS);
+
+            long processedA = jobA.status().processed();
+            long processedB = jobB.status().processed();
+            assertEquals(100, processedA + processedB, "Every item should be processed by exactly one instance");
+            assertTrue(processedA > 0 && processedB > 0, "Both instances should have taken partitions");
+
+            JdbcTemplate jdbc = nodeB.getBean(JdbcTemplate.class);
+            assertEquals(100, jdbc.queryForObject("SELECT COUNT(*) FROM item WHERE status = 'PROCESSED'", Integer.class));
+            List<ItemPartitionLease> leases = nodeA.getBean(ItemPartitionLeaseRepository.class).findAll();
+            assertEquals(10, leases.size(), "100 ids in partitions of 10");
+            assertTrue(leases.stream().allMatch(ItemPartitionLease::isDone));
+            assertEquals(processedA, leases.stream().filter(lease -> lease.getOwner().equals("node-a")).count() * 10);
+        }
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOver() throws Exception {
+        try (ConfigurableApplicationContext node = start("node-a")) {
+            populate(node, 20);
+            ItemShardingService shardingService = node.getBean(ItemShardingService.class);
+            ItemPartitionLeaseRepository leaseRepository = node.getBean(ItemPartitionLeaseRepository.class);
+            shardingService.planPartitions("run-2");
+            //Claimed by an instance that went away, its lease ran out a minute ago
+            assertEquals(1, leaseRepository.claim("run-2/0", "node-gone", Instant.now().minusSeconds(60), Instant.now()));
+            ItemProcessingJob job = new ItemProcessingJob();
+
+            shardingService.process(job, "run-2", true, ForkJoinPool.commonPool()).get(60, TimeUnit.SECONDS);
+
+            assertEquals(20, job.status().processed());
+            ItemPartitionLease partition = leaseRepository.findById("run-2/0").orElseThrow();
+            assertEquals("node-a", partition.getOwner());
+            assertTrue(partition.isDone());
+        }
+    }
+
+    @Test
+    public void testLiveLeaseIsLeftAlone() throws Exception {
+        try (ConfigurableApplicationContext node = start("node-a")) {
+            populate(node, 20);
+            ItemShardingService shardingService = node.getBean(ItemShardingService.class);
+            ItemPartitionLeaseRepository leaseRepository = node.getBean(ItemPartitionLeaseRepository.class);
+            shardingService.planPartitions("run-3");
+            assertEquals(1, leaseRepository.claim("run-3/0", "node-busy", Instant.now().plusSeconds(600), Instant.now()));
+            ItemProcessingJob job = new ItemProcessingJob();
+
+            shardingService.process(job, "run-3", false, ForkJoinPool.commonPool()).get(60, TimeUnit.SECONDS);
+
+            assertEquals(10, job.status().processed(), "Only the partition that isn't claimed by the other instance");
+            assertFalse(leaseRepository.findById("run-3/0").orElseThrow().isDone());
+        }
+    }
+
+    @Test
+    public void testPartitionWithFailedChunkIsReleased() throws Exception {
+        ItemProcessor failing = item -> {
+            if (item.getId() == 3L) {
+                throw new IllegalStateException("Item 3 can't be processed");
+            }
+        };
+        try (ConfigurableApplicationContext node = start("node-a", failing)) {
+            populate(node, 20);
+            ItemPartitionLeaseRepository leaseRepository = node.getBean(ItemPartitionLeaseRepository.class);
+            ItemProcessingJob job = new ItemProcessingJob();
+
+            //Completes although partition 0 stays claimable: this instance doesn't try it again in the same call
+            node.getBean(ItemShardingService.class).process(job, "run-4", true, ForkJoinPool.commonPool()).get(60, TimeUnit.SECONDS);
+
+            assertEquals(5, job.status().failed(), "The chunk with item 3");
+            ItemPartitionLease failed = leaseRepository.findById("run-4/0").orElseThrow();
+            assertFalse(failed.isDone(), "The items of the failed chunk must be processed again");
+            assertNull(failed.getOwner(), "Released, so any instance can claim it right away");
+            assertTrue(leaseRepository.findById("run-4/1").orElseThrow().isDone());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.siemens.internship;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehind",
+        "item.processing.delay-ms=0",
+        "item.processing.chunk-size=2",
+        "item.processing.write-behind.enabled=true",
+        "item.processing.write-behind.batch-size=3",
+        //A queue that fills up and as many chunks as connections: queueing must not hold a connection the flusher needs
+        "item.processing.write-behind.capacity=3",
+        "spring.datasource.hikari.maximum-pool-size=3",
+        "spring.datasource.hikari.connection-timeout=2000",
+        "item.processing.max-concurrency=3",
+        //Long enough that only a full batch, a flush or the end of a run writes in these tests
+        "item.processing.write-behind.flush-interval=1h"
+})
+public class ItemStatusWriteBehindTests {
+
+    @Autowired
+    private ItemStatusWriteBehind writeBehind;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ItemJobResultRepository jobResultRepository;
+
+    @Autowired
+    private ItemTableVersion tableVersion;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ItemBatchBulkhead bulkhead;
+
+    @BeforeEach
+    public void setUp() {
+        writeBehind.flush();
+        jobResultRepository.deleteAll();
+        itemRepository.deleteAll();
+    }
+
+    @Test
+    public void testRunCompletesAfterItsUpdatesAreWritten() throws Exception {
+        for (int i = 1; i <= 11; i++) {
+            itemRepository.save(new Item(null, "Item" + i, "Description" + i, "NEW", "item" + i + "@example.com"));
+        }
+        long versionBefore = tableVersion.current();
+
+        List<Item> processed = itemService.processItemsAsync().get();
+
+        assertEquals(11, processed.size());
+        assertEquals(0, writeBehind.getDepth(), "Nothing should be left in the buffer");
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT status, version, last_modified FROM item");
+        assertTrue(rows.stream().allMatch(row -> "PROCESSED".equals(row.get("STATUS"))), "Every status should be written");
+        assertTrue(rows.stream().allMatch(row -> ((Number) row.get("VERSION")).longValue() == 1), "Every update should bump the version");
+        assertTrue(processed.stream().allMatch(item -> item.getVersion() == 1), "The returned items should carry the written version");
+        assertTrue(rows.stream().allMatch(row -> row.get("LAST_MODIFIED") != null));
+        assertTrue(tableVersion.current() > versionBefore, "The written batches should change the list ETag");
+        assertEquals(0, itemService.countItemsToProcess(true));
+    }
+
+    @Test
+    public void testOnlyTheStatusIsWritten() {
+        Item item = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item queued = new Item(item.getId(), "Old name", "Old description", "PROCESSED", "item1@example.com");
+        queued.setVersion(item.getVersion());
+
+        writeBehind.enqueue(List.of(queued), null, new ItemStatusWriteBehind.Outcome());
+        assertEquals("NEW", itemRepository.findById(item.getId()).orElseThrow().getStatus(), "Not written before a flush");
+        writeBehind.flush();
+
+        Item written = itemRepository.findById(item.getId()).orElseThrow();
+        assertEquals("PROCESSED", written.getStatus());
+        assertEquals("Item1", written.getName(), "The other columns should be left alone");
+        assertEquals(1L, written.getVersion());
+        assertEquals(written.getVersion(), queued.getVersion(), "The queued item should get the version of the write");
+    }
+
+    @Test
+    public void testResultsOfTheJobAreWrittenWithTheStatus() {
+        Item item1 = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item item2 = itemRepository.save(new Item(null, "Item2", "Description2", "NEW", "item2@example.com"));
+        List<Item> items = List.of(item1, item2);
+        items.forEach(item -> item.setStatus("PROCESSED"));
+
+        ItemStatusWriteBehind.Outcome outcome = new ItemStatusWriteBehind.Outcome();
+
+        writeBehind.enqueue(items, "job1", outcome);
+        itemRepository.deleteById(item2.getId());
+        writeBehind.flush();
+
+        List<Item> results = jobResultRepository.findItemsAfter("job1", 0L, PageRequest.of(0, 10));
+        assertEquals(List.of(item1.getId()), results.stream().map(Item::getId).toList(), "A deleted item is not a result");
+        assertTrue(outcome.takeConflicted().isEmpty(), "A deleted item is skipped, not processed again");
+    }
+
+    @Test
+    public void testUpdateOfAnItemChangedSinceItWasProcessedIsReported() {
+        Item item = itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com"));
+        Item queued = new Item(item.getId(), "Item1", "Description1", "PROCESSED", "item1@example.com");
+        queued.setVersion(item.getVersion());
+        ItemStatusWriteBehind.Outcome outcome = new ItemStatusWriteBehind.Outcome();
+        double conflictsBefore = updateCount("conflicted");
+
+        writeBehind.enqueue(List.of(queued), "job1", outcome);
+        item.setStatus("ON_HOLD");
+        itemRepository.save(item);
+        writeBehind.flush();
+
+        Item current = itemRepository.findById(item.getId()).orElseThrow();
+        assertEquals("ON_HOLD", current.getStatus(), "The user's change should not be overwritten");
+        assertEquals(List.of(item.getId()), outcome.takeConflicted(), "The run should process the item again");
+        assertTrue(outcome.takeFailed().isEmpty());
+        assertEquals(conflictsBefore + 1, updateCount("conflicted"));
+        assertTrue(jobResultRepository.findItemsAfter("job1", 0L, PageRequest.of(0, 10)).isEmpty(), "Not a result until it is written");
+    }
+
+    @Test
+    public void testUpdatesQueuedWhileClosingAreWritten() throws Exception {
+        List<Item> items = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            Item item = itemRepository.save(new Item(null, "Item" + i, "Description" + i, "NEW", "item" + i + "@example.com"));
+            item.setStatus("PROCESSED");
+            items.add(item);
+        }
+        //A buffer of its own with a small queue, so the chunks wait for room while it closes
+        ItemStatusWriteBehind closing = new ItemStatusWriteBehind(jdbcTemplate, new TransactionTemplate(transactionManager),
+                tableVersion, bulkhead, cacheManager.getCache(ItemService.ITEM_CACHE), 2, 5, Duration.ofHours(1), new SimpleMeterRegistry());
+        ItemStatusWriteBehind.Outcome outcome = new ItemStatusWriteBehind.Outcome();
+        ExecutorService chunks = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> queued = new ArrayList<>();
+            for (int i = 0; i < items.size(); i += 5) {
+                List<Item> chunk = items.subList(i, i + 5);
+                queued.add(chunks.submit(() -> closing.enqueue(chunk, null, outcome)));
+            }
+            closing.close();
+            for (Future<?> future : queued) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            chunks.shutdownNow();
+        }
+
+        assertEquals(0, itemService.countItemsToProcess(true), "No update should be left in the closed buffer");
+        assertEquals(0, closing.getDepth());
+        assertTrue(outcome.takeConflicted().isEmpty());
+        assertTrue(outcome.takeFailed().isEmpty());
+    }
+
+    @Test
+    public void testFullBatchIsWrittenWithoutFlush() throws InterruptedException {
+        List<Item> items = List.of(
+                itemRepository.save(new Item(null, "Item1", "Description1", "NEW", "item1@example.com")),
+                itemRepository.save(new Item(null, "Item2", "Description2", "NEW", "item2@example.com")),
+                itemRepository.save(new Item(null, "Item3", "Description3", "NEW", "item3@example.com")));
+        items.forEach(item -> item.setStatus("PROCESSED"));
+        double flushesBefore = meterRegistry.get("item.write-behind.flush").timer().count();
+
+        writeBehind.enqueue(items, null, new ItemStatusWriteBehind.Outcome());
+
+        for (int attempt = 0; attempt < 50 && itemService.countItemsToProcess(true) > 0; attempt++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, itemService.countItemsToProcess(true), "The batch size was reached, so it should be written");
+        assertEquals(flushesBefore + 1, meterRegistry.get("item.write-behind.flush").timer().count());
+        assertEquals(0.0, meterRegistry.get("item.write-behind.depth").gauge().value());
+    }
+
+    private double updateCount(String result) {
+        return meterRegistry.get("item.write-behind.updates").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,168 @@
+package com.siemens.internship;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemTransferServiceTests {
+
+    @Mock
+    private ItemService itemService;
+
+    @Mock
+    private ItemChunkProcessor chunkProcessor;
+
+    @TempDir
+    Path directory;
+
+    private ItemTransferService transferService;
+    private List<Item> inserted;
+
+    @BeforeEach
+    public void setUp() {
+        ItemBatchProperties batchProperties = new ItemBatchProperties();
+        batchProperties.setSize(2);
+        ItemBatchWriter batchWriter = new ItemBatchWriter(chunkProcessor, Validation.buildDefaultValidatorFactory().getValidator(), batchProperties, new ItemBatchBulkhead(2));
+        transferService = new ItemTransferService(itemService, batchWriter, batchProperties, new ObjectMapper(), new ItemBatchBulkhead(2));
+
+        //Hand out ids like the database would and remember what was inserted
+        inserted = new ArrayList<>();
+        AtomicLong ids = new AtomicLong();
+        lenient().when(chunkProcessor.insertChunk(anyList())).thenAnswer(invocation -> {
+            List<Item> items = new ArrayList<>(invocation.getArgument(0));
+            items.forEach(item -> item.setId(ids.incrementAndGet()));
+            inserted.addAll(items);
+            return items;
+        });
+    }
+
+    private void stubStreamAll(Item... items) {
+        doAnswer(invocation -> {
+            Consumer<Item> consumer = invocation.getArgument(0);
+            for (Item item : items) {
+                consumer.accept(item);
+            }
+            return null;
+        }).when(itemService).streamAll(any());
+    }
+
+    @Test
+    public void testExportNdjson() throws IOException {
+        stubStreamAll(new Item(1L, "Item1", "Description1", "NEW", "item1@example.com"),
+                new Item(2L, "Item2", "Description2", "PROCESSED", "item2@example.com"));
+        Path file = directory.resolve("items.ndjson");
+
+        ItemTransferResult result = transferService.exportItems(file);
+
+        assertEquals(2, result.rows());
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size(), "One item per line");
+        assertTrue(lines.get(0).contains("\"name\":\"Item1\""));
+        assertFalse(Files.exists(directory.resolve("items.ndjson.part")), "The part file should be moved into place");
+    }
+
+    @Test
+    public void testFailedExportKeepsThePreviousFile() throws IOException {
+        Path file = directory.resolve("items.ndjson");
+        Files.writeString(file, "previous\n");
+        doThrow(new IllegalStateException("db down")).when(itemService).streamAll(any());
+
+        assertThrows(IllegalStateException.class, () -> transferService.exportItems(file));
+
+        assertEquals("previous\n", Files.readString(file));
+        assertFalse(Files.exists(directory.resolve("items.ndjson.part")));
+    }
+
+    @Test
+    public void testCsvRoundTrip() throws IOException {
+        stubStreamAll(new Item(1L, "Item, one", "Says \"hi\"\nand more", null, "item1@example.com"),
+                new Item(2L, "Item2", "", "NEW", "item2@example.com"));
+        Path file = directory.resolve("items.csv");
+
+        transferService.exportItems(file);
+        ItemTransferResult result = transferService.importItems(file, true);
+
+        assertEquals(2, result.rows());
+        assertEquals("Item, one", inserted.get(0).getName());
+        assertEquals("Says \"hi\"\nand more", inserted.get(0).getDescription());
+        assertNull(inserted.get(0).getStatus(), "An empty field should be null");
+        assertEquals("", inserted.get(1).getDescription(), "A quoted empty field should be an empty string");
+    }
+
+    @Test
+    public void testImportReportsInvalidLines() throws IOException {
+        Path file = directory.resolve("items.ndjson");
+        Files.writeString(file, """
+                {"name":"Item1","email":"item1@example.com"}
+                {"name":"Item2","email":"not-an-email"}
+                {"name":
+                
+                {"name":"Item5","email":"item5@example.com"}
+                """);
+
+        ItemTransferResult result = transferService.importItems(file, true);
+
+        assertEquals(2, result.rows());
+        assertEquals(2, result.failed());
+        assertEquals(List.of(2, 3), result.errors().stream().map(ItemBatchResult.ItemError::index).toList(), "Errors should point at the lines");
+        assertEquals(List.of("Item1", "Item5"), inserted.stream().map(Item::getName).toList());
+        assertFalse(Files.exists(directory.resolve("items.ndjson.checkpoint")), "A finished import leaves no checkpoint");
+    }
+
+    @Test
+    public void testImportResumesFromCheckpoint() throws IOException {
+        Path file = directory.resolve("items.csv");
+        Files.writeString(file, """
+                name,email
+                Item1,item1@example.com
+                Item2,item2@example.com
+                Item3,item3@example.com
+                Item4,item4@example.com
+                Item5,item5@example.com
+                """);
+        //The second batch fails, the first one is committed
+        when(chunkProcessor.insertChunk(anyList()))
+                .thenAnswer(invocation -> {
+                    List<Item> items = invocation.getArgument(0);
+                    inserted.addAll(items);
+                    return items;
+                })
+                .thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> transferService.importItems(file, true));
+        assertTrue(Files.exists(directory.resolve("items.csv.checkpoint")));
+
+        reset(chunkProcessor);
+        when(chunkProcessor.insertChunk(anyList())).thenAnswer(invocation -> {
+            List<Item> items = invocation.getArgument(0);
+            inserted.addAll(items);
+            return items;
+        });
+        ItemTransferResult result = transferService.importItems(file, true);
+
+        assertEquals(3, result.rows(), "Only the items after the checkpoint should be imported again");
+        assertEquals(List.of("Item1", "Item2", "Item3", "Item4", "Item5"), inserted.stream().map(Item::getName).toList());
+    }
+
+    @Test
+    public void testUnknownFormat() {
+        assertThrows(IllegalArgumentException.class, () -> transferService.importItems(directory.resolve("items.xml"), true));
+    }
+}
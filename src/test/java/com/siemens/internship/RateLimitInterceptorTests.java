@@ -0,0 +1,69 @@
+package com.siemens.internship;
+
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitInterceptorTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private final RateLimitInterceptor interceptor = new RateLimitInterceptor(
+            new TokenBucket(2, 100, now::get), new TokenBucket(1, 0.1, now::get));
+
+    @Test
+    public void testRejectsProcessCallsWithRetryAfter() {
+        assertTrue(handle("POST", "/api/items/process/jobs").isEmpty());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean allowed = interceptor.preHandle(new MockHttpServletRequest("GET", "/api/items/process"), response, new Object());
+
+        assertFalse(allowed);
+        assertEquals(429, response.getStatus());
+        assertEquals("10", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void testProcessCallsDontUseTheApiBudget() {
+        handle("GET", "/api/items/process");
+        handle("GET", "/api/items/process");
+
+        assertTrue(handle("GET", "/api/items").isEmpty(), "The CRUD requests have their own bucket");
+        assertTrue(handle("GET", "/api/items/1").isEmpty());
+        assertFalse(handle("GET", "/api/items/2").isEmpty(), "The api bucket is empty after its burst");
+    }
+
+    @Test
+    public void testPollingAJobUsesTheApiBucket() {
+        assertTrue(handle("POST", "/api/items/process/jobs").isEmpty());
+
+        assertTrue(handle("GET", "/api/items/process/jobs/job1").isEmpty(), "Polling should not need a process token");
+        assertTrue(handle("GET", "/api/items/process/jobs/job1/results").isEmpty());
+        assertFalse(handle("GET", "/api/items/process/jobs/job1").isEmpty(), "Polling is limited by the api bucket");
+        assertFalse(handle("POST", "/api/items/process/bulk").isEmpty(), "Starting a run still needs a process token");
+    }
+
+    @Test
+    public void testAsyncDispatchIsNotCharged() {
+        assertTrue(handle("GET", "/api/items/process").isEmpty());
+
+        MockHttpServletRequest dispatch = new MockHttpServletRequest("GET", "/api/items/process");
+        dispatch.setDispatcherType(DispatcherType.ASYNC);
+        assertTrue(interceptor.preHandle(dispatch, new MockHttpServletResponse(), new Object()),
+                "The response of an admitted request should not be rejected");
+    }
+
+    //The 429 response if the request was rejected, empty if it was let through
+    private Optional<MockHttpServletResponse> handle(String method, String uri) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        return interceptor.preHandle(new MockHttpServletRequest(method, uri), response, new Object())
+                ? Optional.empty()
+                : Optional.of(response);
+    }
+}
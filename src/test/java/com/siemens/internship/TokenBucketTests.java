@@ -0,0 +1,65 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void testBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 1, now::get);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire(), "The burst is limited by the capacity");
+    }
+
+    @Test
+    public void testRefillsOverTime() {
+        TokenBucket bucket = new TokenBucket(1, 2, now::get);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+        assertFalse(bucket.tryAcquire(), "0.8 tokens after 400ms at 2 per second");
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testNeverHoldsMoreThanCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 10, now::get);
+
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testSecondsUntilNextToken() {
+        TokenBucket bucket = new TokenBucket(1, 0.2, now::get);
+        assertEquals(0, bucket.secondsUntilNextToken());
+
+        bucket.tryAcquire();
+
+        assertEquals(5, bucket.secondsUntilNextToken());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertEquals(2, bucket.secondsUntilNextToken());
+    }
+
+    @Test
+    public void testRejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
@@ -0,0 +1,58 @@
+package com.siemens.internship;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidEmailValidatorTests {
+
+    //The regex @ValidEmail replaced, the validator must accept exactly the same
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$");
+
+    private final ValidEmailValidator validator = new ValidEmailValidator();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a@b.co", "valid.email@example.com", "first_last+tag%x-y@sub-domain.example.museum", "A1@B2.C3.DE", "a@b..co", ".@-.co"})
+    public void testValidEmails(String email) {
+        assertTrue(ValidEmailValidator.isValidEmail(email), email + " should be valid");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "invalid-email", "@example.com", "a@", "a@.co", "a@example", "a@example.c", "a@example.abcdefg",
+            "a@example.c0m", "a@b@example.com", "a b@example.com", "a@exam_ple.com", "a@example.com\n", "é@example.com"})
+    public void testInvalidEmails(String email) {
+        assertFalse(ValidEmailValidator.isValidEmail(email), email + " should be invalid");
+    }
+
+    @Test
+    public void testNullIsLeftToNotBlank() {
+        assertTrue(validator.isValid(null, null));
+    }
+
+    @Test
+    public void testLongInputs() {
+        assertTrue(ValidEmailValidator.isValidEmail("a".repeat(100_000) + "@example.com"));
+        assertFalse(ValidEmailValidator.isValidEmail("a@" + "a.".repeat(50_000) + "c1"));
+    }
+
+    @Test
+    public void testSameResultAsThePattern() {
+        //Short random strings over the characters that matter, so every rule gets hit many times
+        String alphabet = "aZ9.@-_%+ \n";
+        Random random = new Random(42);
+        for (int n = 0; n < 200_000; n++) {
+            StringBuilder email = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                email.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String value = email.toString();
+            assertEquals(EMAIL_PATTERN.matcher(value).matches(), ValidEmailValidator.isValidEmail(value), "Different result for [" + value + "]");
+        }
+    }
+}